@@ -0,0 +1,20 @@
+package datastr.cache;
+
+import datastr.hashmap.Map;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * A map that holds at most capacity() items. When it is full, inserting a new key evicts another one.
+ */
+
+public interface Cache<K extends Comparable<K>, V> extends Map<K, V> {
+            /*** STATE INFORMATION ***/
+    public int capacity();
+            /*** STATISTICS ***/
+    public long hitCount();
+    public long missCount();
+    public long evictionCount();
+}
@@ -0,0 +1,65 @@
+package datastr.cache;
+
+import datastr.hashmap.Hashing;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * A Count-Min sketch that estimates how often a key has been used recently.
+ * Every key increments one counter in each of the four rows, each row using a different hash of the key.
+ * Collisions can only make a counter larger, so the smallest of the four counters is the best estimate.
+ * The counters stop at 15 and are all halved once the number of increments reaches ten times the cache's capacity,
+ * so keys that used to be popular are eventually forgotten.
+ */
+
+final class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = { 0x97cb3127, 0x0b8e2c7d, 0x5bd1e995, 0x7feb352d };
+
+    private final byte[] counters; // DEPTH rows of width counters each
+    private final int width; // A power of two, so a column is hash & (width - 1)
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int capacity) {
+        int size = 16;
+        while (size < capacity) size <<= 1;
+
+        width = size;
+        counters = new byte[DEPTH * width];
+        sampleSize = 10 * Math.max(capacity, 1);
+    }
+
+    // Every row mixes the hash code combined with its own seed, so a collision in one row is unlikely in another
+    private static int mix(int h, int seed) { return Hashing.mix(h ^ seed); }
+
+    private int indexOf(int hash, int row) { return row * width + (mix(hash, SEEDS[row]) & (width - 1)); }
+
+    int frequency(Object key) {
+        int hash = key.hashCode();
+        int min = MAX_COUNT;
+
+        for (int row = 0; row < DEPTH; row++) min = Math.min(min, counters[indexOf(hash, row)]);
+
+        return min;
+    }
+
+    void increment(Object key) {
+        int hash = key.hashCode();
+
+        for (int row = 0; row < DEPTH; row++) {
+            int index = indexOf(hash, row);
+            if (counters[index] < MAX_COUNT) ++counters[index];
+        }
+
+        if (++additions == sampleSize) reset();
+    }
+
+    private void reset() {
+        for (int i = 0; i < counters.length; i++) counters[i] >>= 1;
+        additions >>= 1;
+    }
+}
@@ -0,0 +1,103 @@
+package datastr.cache;
+
+import datastr.hashmap.HashMap;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * A cache that evicts the least recently used item when it is full.
+ * The hash table maps every key to its node in a list ordered by the time of the last use,
+ * so get, insert and delete all take O(1).
+ */
+
+public final class LRUCache<K extends Comparable<K>, V> implements Cache<K, V> {
+    private final HashMap<K, LruList.Node<K, V>> map;
+    private final LruList<K, V> list = new LruList<>();
+    private final int capacity;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public LRUCache(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive");
+
+        this.capacity = capacity;
+        map = new HashMap<>(capacity);
+    }
+
+    public String toString() { return list.toString(); }
+
+    public boolean isEmpty() { return list.isEmpty(); }
+    public int size() { return list.size(); }
+    public int capacity() { return capacity; }
+
+    // Checking whether a key is in the cache doesn't count as using it
+    public boolean contains(K key) { return map.contains(key); }
+
+    public long hitCount() { return hits; }
+    public long missCount() { return misses; }
+    public long evictionCount() { return evictions; }
+
+    public void insert(K key, V value) {
+        LruList.Node<K, V> node = map.get(key);
+
+        if (node != null) {
+            node.value = value;
+            list.moveToFront(node);
+            return;
+        }
+
+        if (list.size() == capacity) {
+            map.delete(list.removeLast().key);
+            ++evictions;
+        }
+
+        node = new LruList.Node<>(key, value);
+        list.addFirst(node);
+        map.insert(key, node);
+    }
+
+    public V get(K key) {
+        LruList.Node<K, V> node = map.get(key);
+
+        if (node == null) {
+            ++misses;
+            return null;
+        }
+
+        ++hits;
+        list.moveToFront(node);
+        return node.value;
+    }
+
+    public V delete(K key) {
+        LruList.Node<K, V> node = map.delete(key);
+        if (node == null) return null;
+
+        list.remove(node);
+        return node.value;
+    }
+
+    public void insertAll(K[] keys, V[] values) {
+        for (int i = 0; i < keys.length; i++) insert(keys[i], values[i]);
+    }
+
+    public void getAll(K[] keys, V[] results) {
+        for (int i = 0; i < keys.length; i++) results[i] = get(keys[i]);
+    }
+
+    public void deleteAll(K[] keys, V[] results) {
+        for (int i = 0; i < keys.length; i++) results[i] = delete(keys[i]);
+    }
+
+    /**
+     * Calls the action for every item in no particular order. Unlike get(), this doesn't count as using the items
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        map.forEach((key, node) -> action.accept(key, node.value));
+    }
+}
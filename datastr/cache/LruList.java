@@ -0,0 +1,86 @@
+package datastr.cache;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * A doubly linked list of cache items ordered by the time they were last used, the most recently used one first.
+ * Unlike datastr.linkedlist.LinkedList it hands its nodes out, so a cache can keep a node in its hash table
+ * and move or unlink it in O(1) without searching the list.
+ */
+
+final class LruList<K, V> {
+
+    static final class Node<K, V> {
+        final K key;
+        V value;
+        boolean inWindow; // Which segment of a WTinyLFUCache the node belongs to
+        private Node<K, V> next;
+        private Node<K, V> previous;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        public String toString() { return String.format("%s=%s", key.toString(), value.toString()); }
+    }
+
+    private Node<K, V> head; // The most recently used node
+    private Node<K, V> tail; // The least recently used node
+    private int count;
+
+    public String toString() {
+        if (isEmpty()) return "[]";
+
+        StringBuilder builder = new StringBuilder("[");
+
+        for (Node<K, V> current = head; current != null; current = current.next) builder.append(current).append(", ");
+
+        int s = builder.length() - 2;
+        int e = builder.length();
+        builder.replace(s, e, "]");
+
+        return builder.toString();
+    }
+
+    boolean isEmpty() { return head == null; }
+    int size() { return count; }
+    Node<K, V> last() { return tail; }
+
+    void addFirst(Node<K, V> node) {
+        node.previous = null;
+        node.next = head;
+
+        if (head == null) tail = node;
+        else head.previous = node;
+
+        head = node;
+        ++count;
+    }
+
+    void remove(Node<K, V> node) {
+        if (node.previous == null) head = node.next;
+        else node.previous.next = node.next;
+
+        if (node.next == null) tail = node.previous;
+        else node.next.previous = node.previous;
+
+        node.next = null;
+        node.previous = null;
+        --count;
+    }
+
+    void moveToFront(Node<K, V> node) {
+        if (node == head) return;
+        remove(node);
+        addFirst(node);
+    }
+
+    Node<K, V> removeLast() {
+        Node<K, V> node = tail;
+        if (node != null) remove(node);
+        return node;
+    }
+}
@@ -0,0 +1,142 @@
+package datastr.cache;
+
+import datastr.hashmap.HashMap;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * A cache that decides what to keep by how often the keys are used rather than only by how recently (W-TinyLFU).
+ *
+ * A new item first goes into a small LRU window (1% of the capacity). When the window overflows, its least recently
+ * used item becomes a candidate for the main LRU segment. If the main segment is full, the candidate gets in only
+ * if the frequency sketch says it has been used more often than the item the main segment would evict,
+ * otherwise the candidate itself is evicted. So a burst of keys that are used once can't flush out popular keys,
+ * while the window still gives new keys a chance to build up their frequency.
+ */
+
+public final class WTinyLFUCache<K extends Comparable<K>, V> implements Cache<K, V> {
+    private final HashMap<K, LruList.Node<K, V>> map;
+    private final LruList<K, V> window = new LruList<>();
+    private final LruList<K, V> main = new LruList<>();
+    private final FrequencySketch sketch;
+    private final int capacity;
+    private final int windowCapacity;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public WTinyLFUCache(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive");
+
+        this.capacity = capacity;
+        windowCapacity = Math.max(1, capacity / 100);
+        map = new HashMap<>(capacity);
+        sketch = new FrequencySketch(capacity);
+    }
+
+    public String toString() { return String.format("window=%s, main=%s", window, main); }
+
+    public boolean isEmpty() { return size() == 0; }
+    public int size() { return window.size() + main.size(); }
+    public int capacity() { return capacity; }
+
+    // Checking whether a key is in the cache doesn't count as using it
+    public boolean contains(K key) { return map.contains(key); }
+
+    public long hitCount() { return hits; }
+    public long missCount() { return misses; }
+    public long evictionCount() { return evictions; }
+
+    private void touch(LruList.Node<K, V> node) {
+        if (node.inWindow) window.moveToFront(node);
+        else main.moveToFront(node);
+    }
+
+    private void evict(LruList.Node<K, V> node) {
+        map.delete(node.key);
+        ++evictions;
+    }
+
+    public void insert(K key, V value) {
+        sketch.increment(key);
+        LruList.Node<K, V> node = map.get(key);
+
+        if (node != null) {
+            node.value = value;
+            touch(node);
+            return;
+        }
+
+        node = new LruList.Node<>(key, value);
+        node.inWindow = true;
+        window.addFirst(node);
+        map.insert(key, node);
+
+        if (window.size() <= windowCapacity) return;
+
+        LruList.Node<K, V> candidate = window.removeLast();
+        candidate.inWindow = false;
+
+        if (main.size() < capacity - windowCapacity) {
+            main.addFirst(candidate);
+            return;
+        }
+
+        LruList.Node<K, V> victim = main.last();
+
+        if (victim != null && sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+            main.removeLast();
+            evict(victim);
+            main.addFirst(candidate);
+        } else {
+            evict(candidate);
+        }
+    }
+
+    public V get(K key) {
+        sketch.increment(key);
+        LruList.Node<K, V> node = map.get(key);
+
+        if (node == null) {
+            ++misses;
+            return null;
+        }
+
+        ++hits;
+        touch(node);
+        return node.value;
+    }
+
+    public V delete(K key) {
+        LruList.Node<K, V> node = map.delete(key);
+        if (node == null) return null;
+
+        if (node.inWindow) window.remove(node);
+        else main.remove(node);
+
+        return node.value;
+    }
+
+    public void insertAll(K[] keys, V[] values) {
+        for (int i = 0; i < keys.length; i++) insert(keys[i], values[i]);
+    }
+
+    public void getAll(K[] keys, V[] results) {
+        for (int i = 0; i < keys.length; i++) results[i] = get(keys[i]);
+    }
+
+    public void deleteAll(K[] keys, V[] results) {
+        for (int i = 0; i < keys.length; i++) results[i] = delete(keys[i]);
+    }
+
+    /**
+     * Calls the action for every item in no particular order. Unlike get(), this doesn't count as using the items
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        map.forEach((key, node) -> action.accept(key, node.value));
+    }
+}
@@ -0,0 +1,45 @@
+package datastr.hashmap;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * Turns keys or values into bytes and back, so that HashMap can write them to a snapshot file.
+ * read() must consume exactly the bytes written by write().
+ */
+
+public interface Codec<T> {
+    public void write(T value, DataOutput out) throws IOException;
+    public T read(ByteBuffer in);
+
+    public static final Codec<Integer> INTEGER = new Codec<Integer>() {
+        public void write(Integer value, DataOutput out) throws IOException { out.writeInt(value); }
+        public Integer read(ByteBuffer in) { return in.getInt(); }
+    };
+
+    public static final Codec<Long> LONG = new Codec<Long>() {
+        public void write(Long value, DataOutput out) throws IOException { out.writeLong(value); }
+        public Long read(ByteBuffer in) { return in.getLong(); }
+    };
+
+    // A string is written as its length in bytes followed by its UTF-8 bytes
+    public static final Codec<String> STRING = new Codec<String>() {
+        public void write(String value, DataOutput out) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        public String read(ByteBuffer in) {
+            byte[] bytes = new byte[in.getInt()];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+}
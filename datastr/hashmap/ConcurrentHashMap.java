@@ -0,0 +1,237 @@
+package datastr.hashmap;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * A map that can be used by many threads at once without any external synchronization.
+ *
+ * The map is split into segments and every segment is a small separate chaining hash table guarded by its own lock
+ * (lock striping). Writers only lock the segment their key belongs to, so writers of different segments never wait
+ * for each other. Readers take no locks at all.
+ *
+ * Reading without a lock is safe because a chain is never changed in place: a new node is put at the head of a chain,
+ * deleting a node copies the nodes in front of it, and growing a segment copies all of its nodes into a new table
+ * which is published at once. So a reader always sees either the old chain or the new one, never a broken one.
+ * Since every segment grows on its own, a resize only holds up the writers of that segment.
+ */
+
+public final class ConcurrentHashMap<K extends Comparable<K>, V> implements Map<K, V> {
+
+    private static final class Node<K, V> {
+        private final int hash;
+        private final K key;
+        private volatile V value; // Volatile, since it is changed in place when a key is inserted again
+        private final Node<K, V> next;
+
+        Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    private static final class Segment<K, V> {
+        private final ReentrantLock lock = new ReentrantLock(); // Only held by writers
+        // The elements of an AtomicReferenceArray are read and written with volatile semantics,
+        // so a reader always sees a fully built node
+        private volatile AtomicReferenceArray<Node<K, V>> table;
+        private volatile int count; // Only changed under the lock, but read by size() without it
+
+        Segment(int size) { table = new AtomicReferenceArray<>(size); }
+    }
+
+    private static final double LOAD_FACTOR = 0.75;
+
+    private final Segment<K, V>[] segments;
+    private final int segmentShift; // The segment index is taken from the high bits of a hash code
+    private final int segmentMask;
+
+    public ConcurrentHashMap() { this(16, 16); }
+
+    public ConcurrentHashMap(int initialCapacity) { this(initialCapacity, 16); }
+
+    /**
+     * @param concurrencyLevel the number of threads expected to write at the same time.
+     *                         The number of segments is the nearest power of two that is not less than it.
+     */
+    public ConcurrentHashMap(int initialCapacity, int concurrencyLevel) {
+        int segmentCount = 1;
+        int shift = 0;
+
+        while (segmentCount < concurrencyLevel) {
+            segmentCount <<= 1;
+            ++shift;
+        }
+
+        segmentShift = 32 - shift;
+        segmentMask = segmentCount - 1;
+
+        int perSegment = initialCapacity / segmentCount;
+        int size = 2;
+        while (size * LOAD_FACTOR <= perSegment) size <<= 1;
+
+        segments = (Segment<K, V>[]) new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) segments[i] = new Segment<>(size);
+    }
+
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+
+        for (int i = 0; i < segments.length; i++) {
+            AtomicReferenceArray<Node<K, V>> table = segments[i].table;
+
+            for (int j = 0; j < table.length(); j++) {
+                for (Node<K, V> node = table.get(j); node != null; node = node.next) {
+                    builder.append(String.format("%s=%s", node.key.toString(), node.value.toString())).append(", ");
+                }
+            }
+        }
+
+        if (builder.length() == 1) return "[]";
+
+        int s = builder.length() - 2;
+        int e = builder.length();
+        builder.replace(s, e, "]");
+
+        return builder.toString();
+    }
+
+    public boolean isEmpty() { return size() == 0; }
+
+    /**
+     * @return the sum of the segments' sizes. Since other threads may change the map while we are counting,
+     * the result is only exact if nobody is writing to the map
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < segments.length; i++) size += segments[i].count;
+        return size;
+    }
+
+    public boolean contains(K key) { return get(key) != null; }
+
+    private Segment<K, V> segmentFor(int hash) {
+        // With only one segment the shift is 32 which Java treats as 0, so we rely on the mask being 0
+        return segments[(hash >>> segmentShift) & segmentMask];
+    }
+
+    public V get(K key) {
+        int hash = Hashing.mix(key.hashCode());
+        AtomicReferenceArray<Node<K, V>> table = segmentFor(hash).table;
+
+        for (Node<K, V> node = table.get(hash & (table.length() - 1)); node != null; node = node.next) {
+            if (node.hash == hash && node.key.equals(key)) return node.value;
+        }
+
+        return null;
+    }
+
+    public void insert(K key, V value) {
+        int hash = Hashing.mix(key.hashCode());
+        Segment<K, V> segment = segmentFor(hash);
+
+        segment.lock.lock();
+        try {
+            AtomicReferenceArray<Node<K, V>> table = segment.table;
+            int index = hash & (table.length() - 1);
+            Node<K, V> first = table.get(index);
+
+            // If we insert a key that's already is the map, we just change its value
+            for (Node<K, V> node = first; node != null; node = node.next) {
+                if (node.hash == hash && node.key.equals(key)) {
+                    node.value = value;
+                    return;
+                }
+            }
+
+            table.set(index, new Node<>(hash, key, value, first));
+            ++segment.count;
+
+            if (segment.count > table.length() * LOAD_FACTOR) rehash(segment);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    public V delete(K key) {
+        int hash = Hashing.mix(key.hashCode());
+        Segment<K, V> segment = segmentFor(hash);
+
+        segment.lock.lock();
+        try {
+            AtomicReferenceArray<Node<K, V>> table = segment.table;
+            int index = hash & (table.length() - 1);
+            Node<K, V> first = table.get(index);
+
+            for (Node<K, V> node = first; node != null; node = node.next) {
+                if (node.hash == hash && node.key.equals(key)) {
+                    // The nodes after the deleted one stay as they are, the ones in front of it are copied,
+                    // so readers that are walking the old chain right now are not affected
+                    Node<K, V> newFirst = node.next;
+                    for (Node<K, V> p = first; p != node; p = p.next) newFirst = new Node<>(p.hash, p.key, p.value, newFirst);
+
+                    table.set(index, newFirst);
+                    --segment.count;
+                    return node.value;
+                }
+            }
+
+            return null;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    public void insertAll(K[] keys, V[] values) {
+        for (int i = 0; i < keys.length; i++) insert(keys[i], values[i]);
+    }
+
+    public void getAll(K[] keys, V[] results) {
+        for (int i = 0; i < keys.length; i++) results[i] = get(keys[i]);
+    }
+
+    public void deleteAll(K[] keys, V[] results) {
+        for (int i = 0; i < keys.length; i++) results[i] = delete(keys[i]);
+    }
+
+    /**
+     * Calls the action for every item without taking any locks. An item inserted or deleted while the map
+     * is being walked may or may not be seen
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (Segment<K, V> segment: segments) {
+            AtomicReferenceArray<Node<K, V>> table = segment.table;
+
+            for (int i = 0; i < table.length(); i++) {
+                for (Node<K, V> node = table.get(i); node != null; node = node.next) action.accept(node.key, node.value);
+            }
+        }
+    }
+
+    /**
+     * Creates a table which is twice as big and copies every node of the segment into it.
+     * The old table is left untouched, so readers can go on using it until the new one is published.
+     * Must be called under the segment's lock.
+     */
+    private void rehash(Segment<K, V> segment) {
+        AtomicReferenceArray<Node<K, V>> oldTable = segment.table;
+        AtomicReferenceArray<Node<K, V>> newTable = new AtomicReferenceArray<>(oldTable.length() << 1);
+        int mask = newTable.length() - 1;
+
+        for (int i = 0; i < oldTable.length(); i++) {
+            for (Node<K, V> node = oldTable.get(i); node != null; node = node.next) {
+                int index = node.hash & mask;
+                newTable.set(index, new Node<>(node.hash, node.key, node.value, newTable.get(index)));
+            }
+        }
+
+        segment.table = newTable;
+    }
+}
@@ -0,0 +1,342 @@
+package datastr.hashmap;
+
+import datastr.tree.SortedTreeMap;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicMarkableReference;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * A sorted map that can be used by many threads at once without any locks.
+ *
+ * A skip list is a sorted linked list with extra levels of links on top of it: every node is on level 0, about
+ * half of them are also on level 1, a quarter on level 2 and so on. A search starts at the top level and goes down
+ * a level whenever the next node is too far, so it takes O(log n) on average. Unlike a balanced tree, nothing
+ * is ever rotated, an insert or a delete only changes the links right before its own node, and every link
+ * is changed with a single compare-and-set.
+ *
+ * Every link carries a mark. Deleting a key takes three steps:
+ *   1. Its value is set to null, from this moment on the key is not in the map.
+ *   2. The node's own links are marked from the top level down, after that nobody can link a new node after it.
+ *   3. The node is unlinked from its predecessors. Any thread that walks past a marked node unlinks it,
+ *      so a delete never waits for another thread.
+ *
+ * Readers never change anything and never wait. Iteration is weakly consistent: it sees every key that is in the map
+ * for the whole iteration and may or may not see keys inserted or deleted at the same time.
+ */
+
+public final class ConcurrentSkipListMap<K extends Comparable<K>, V> implements Map<K, V> {
+    private static final int MAX_LEVEL = 32;
+
+    private static final class Node<K, V> {
+        private final K key;
+        private final AtomicReference<V> value; // Null once the key has been deleted
+        private final AtomicMarkableReference<Node<K, V>>[] next; // One link per level, marked when deleted
+
+        Node(K key, V value, int levels) {
+            this.key = key;
+            this.value = new AtomicReference<>(value);
+            next = (AtomicMarkableReference<Node<K, V>>[]) new AtomicMarkableReference[levels];
+            for (int level = 0; level < levels; level++) next[level] = new AtomicMarkableReference<>(null, false);
+        }
+
+        int levels() { return next.length; }
+    }
+
+    private final Node<K, V> head = new Node<>(null, null, MAX_LEVEL); // Its key is never looked at
+    private final LongAdder count = new LongAdder(); // Cheaper than an atomic integer when many threads write at once
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        forEach((key, value) -> builder.append(String.format("%s=%s", key.toString(), value.toString())).append(", "));
+
+        if (builder.length() == 1) return "[]";
+
+        int s = builder.length() - 2;
+        int e = builder.length();
+        builder.replace(s, e, "]");
+
+        return builder.toString();
+    }
+
+    public boolean isEmpty() { return firstLive(head.next[0].getReference()) == null; }
+
+    /**
+     * @return the number of keys. Since other threads may change the map while we are counting,
+     * the result is only exact if nobody is writing to the map
+     */
+    public int size() { return count.intValue(); }
+
+    public boolean contains(K key) { return get(key) != null; }
+
+    // Level 1 or more with the probability 1, 2 or more with 1/2, 3 or more with 1/4 and so on
+    private static int randomLevel() {
+        int random = ThreadLocalRandom.current().nextInt();
+        return Math.min(Integer.numberOfTrailingZeros(random) + 1, MAX_LEVEL);
+    }
+
+    /**
+     * Finds the last node less than the key and the node after it on every level, unlinking the marked nodes
+     * on the way. If an unlink fails, the predecessor has changed under us, so we start over from the top.
+     * @return true if there is a node with the key on level 0
+     */
+    private boolean find(K key, Node<K, V>[] predecessors, Node<K, V>[] successors) {
+        boolean[] marked = { false };
+
+        retry:
+        while (true) {
+            Node<K, V> predecessor = head;
+
+            for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+                Node<K, V> current = predecessor.next[level].getReference();
+
+                while (current != null) {
+                    Node<K, V> successor = current.next[level].get(marked);
+
+                    if (marked[0]) {
+                        if (!predecessor.next[level].compareAndSet(current, successor, false, false)) continue retry;
+                        current = successor;
+                    } else if (current.key.compareTo(key) < 0) {
+                        predecessor = current;
+                        current = successor;
+                    } else break;
+                }
+
+                predecessors[level] = predecessor;
+                successors[level] = current;
+            }
+
+            return successors[0] != null && successors[0].key.compareTo(key) == 0;
+        }
+    }
+
+    /**
+     * Walks down without changing anything, skipping the marked nodes
+     * @return the last node less than the key, or less than or equal to it if inclusive. The head if there is none
+     */
+    private Node<K, V> findLast(K key, boolean inclusive) {
+        boolean[] marked = { false };
+        Node<K, V> predecessor = head;
+
+        for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+            Node<K, V> current = predecessor.next[level].getReference();
+
+            while (current != null) {
+                Node<K, V> successor = current.next[level].get(marked);
+
+                if (marked[0]) {
+                    current = successor;
+                    continue;
+                }
+
+                int comparison = current.key.compareTo(key);
+                if (comparison > 0 || (comparison == 0 && !inclusive)) break;
+
+                predecessor = current;
+                current = successor;
+            }
+        }
+
+        return predecessor;
+    }
+
+    // The first node from this one on whose key hasn't been deleted
+    private Node<K, V> firstLive(Node<K, V> node) {
+        while (node != null && node.value.get() == null) node = node.next[0].getReference();
+        return node;
+    }
+
+    public V get(K key) {
+        Node<K, V> node = findLast(key, true);
+        return node != head && node.key.compareTo(key) == 0 ? node.value.get() : null;
+    }
+
+    public void insert(K key, V value) {
+        Node<K, V>[] predecessors = (Node<K, V>[]) new Node[MAX_LEVEL];
+        Node<K, V>[] successors = (Node<K, V>[]) new Node[MAX_LEVEL];
+
+        while (true) {
+            if (find(key, predecessors, successors)) {
+                // The key is already there, so we just change its value, unless someone has just deleted it
+                Node<K, V> node = successors[0];
+
+                for (V old = node.value.get(); old != null; old = node.value.get()) {
+                    if (node.value.compareAndSet(old, value)) return;
+                }
+
+                // Help the other thread to finish the delete, the next find() unlinks the node
+                mark(node);
+                continue;
+            }
+
+            Node<K, V> node = new Node<>(key, value, randomLevel());
+            for (int level = 0; level < node.levels(); level++) node.next[level].set(successors[level], false);
+
+            // Once it is on level 0, the key is in the map. The upper levels only make searches faster
+            if (!predecessors[0].next[0].compareAndSet(successors[0], node, false, false)) continue;
+            count.increment();
+
+            for (int level = 1; level < node.levels(); level++) {
+                while (true) {
+                    Node<K, V> successor = successors[level];
+                    Node<K, V> current = node.next[level].getReference();
+
+                    // If the link can't be changed, it has been marked: the key is being deleted, so we stop building
+                    if (current != successor && !node.next[level].compareAndSet(current, successor, false, false)) return;
+                    if (predecessors[level].next[level].compareAndSet(successor, node, false, false)) break;
+
+                    find(key, predecessors, successors);
+                    if (successors[0] != node) return; // It has been deleted already
+                }
+            }
+
+            return;
+        }
+    }
+
+    /**
+     * Marks every link of the node from the top level down, so that nothing can be linked after it anymore
+     */
+    private void mark(Node<K, V> node) {
+        boolean[] marked = { false };
+
+        for (int level = node.levels() - 1; level >= 0; level--) {
+            Node<K, V> successor = node.next[level].get(marked);
+
+            while (!marked[0]) {
+                node.next[level].compareAndSet(successor, successor, false, true);
+                successor = node.next[level].get(marked);
+            }
+        }
+    }
+
+    public V delete(K key) {
+        Node<K, V>[] predecessors = (Node<K, V>[]) new Node[MAX_LEVEL];
+        Node<K, V>[] successors = (Node<K, V>[]) new Node[MAX_LEVEL];
+
+        if (!find(key, predecessors, successors)) return null;
+
+        Node<K, V> node = successors[0];
+        V value;
+
+        // Only one thread takes the value away, the others see null and return
+        do {
+            value = node.value.get();
+            if (value == null) return null;
+        } while (!node.value.compareAndSet(value, null));
+
+        count.decrement();
+        mark(node);
+        find(key, predecessors, successors); // Unlinks the node on every level
+        return value;
+    }
+
+    public void insertAll(K[] keys, V[] values) { for (int i = 0; i < keys.length; i++) insert(keys[i], values[i]); }
+    public void getAll(K[] keys, V[] results) { for (int i = 0; i < keys.length; i++) results[i] = get(keys[i]); }
+    public void deleteAll(K[] keys, V[] results) { for (int i = 0; i < keys.length; i++) results[i] = delete(keys[i]); }
+
+            /*** ORDERED ACCESS ***/
+
+    /**
+     * @return the greatest key less than or equal to the specified one, null if there is no such key
+     */
+    public K floor(K key) {
+        boolean inclusive = true;
+
+        while (true) {
+            Node<K, V> node = findLast(key, inclusive);
+            if (node == head) return null;
+            if (node.value.get() != null) return node.key;
+
+            // The key has just been deleted, there are no back links, so we search again for the one before it
+            key = node.key;
+            inclusive = false;
+        }
+    }
+
+    /**
+     * @return the least key greater than or equal to the specified one, null if there is no such key
+     */
+    public K ceiling(K key) {
+        Node<K, V> node = findLast(key, false).next[0].getReference();
+
+        // Another thread may link a smaller key right after the node findLast() stopped at, so we skip such keys
+        while (node != null && (node.value.get() == null || node.key.compareTo(key) < 0)) node = node.next[0].getReference();
+        return node != null ? node.key : null;
+    }
+
+    // Walks level 0 in ascending order of the keys
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (Node<K, V> node = head.next[0].getReference(); node != null; node = node.next[0].getReference()) {
+            V value = node.value.get();
+            if (value != null) action.accept(node.key, value);
+        }
+    }
+
+    /**
+     * Walks the keys from one to another inclusive in ascending order, a null bound means there is no bound.
+     * It is weakly consistent like forEach() and can be used while other threads change the map.
+     * The key and the value are read together when the cursor moves, so they always belong to each other.
+     */
+    public final class Cursor implements SortedTreeMap.Cursor<K, V> {
+        private final K from;
+        private final K to;
+        private Node<K, V> next;
+        private K key;
+        private V value;
+
+        private Cursor(K from, K to) {
+            this.from = from;
+            this.to = to;
+            reset();
+        }
+
+        public void reset() {
+            next = (from != null ? findLast(from, false) : head).next[0].getReference();
+            key = null;
+            value = null;
+        }
+
+        public boolean advance() {
+            while (next != null) {
+                Node<K, V> node = next;
+                next = node.next[0].getReference();
+
+                if (to != null && node.key.compareTo(to) > 0) break;
+                // Keys below the lower bound can be linked after the node reset() started from, like in ceiling()
+                if (from != null && node.key.compareTo(from) < 0) continue;
+
+                V nodeValue = node.value.get();
+                if (nodeValue != null) {
+                    key = node.key;
+                    value = nodeValue;
+                    return true;
+                }
+            }
+
+            next = null;
+            key = null;
+            value = null;
+            return false;
+        }
+
+        public K key() {
+            if (key == null) throw new IllegalStateException("The cursor is not at an entry");
+            return key;
+        }
+
+        public V value() {
+            if (key == null) throw new IllegalStateException("The cursor is not at an entry");
+            return value;
+        }
+    }
+
+    public Cursor range(K from, K to) { return new Cursor(from, to); }
+}
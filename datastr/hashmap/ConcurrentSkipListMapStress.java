@@ -0,0 +1,139 @@
+package datastr.hashmap;
+
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * A stress test of ConcurrentSkipListMap with writers and readers running at once over a small range of keys,
+ * so that inserts and deletes keep landing right next to the nodes the readers are looking at.
+ *
+ * Writer w owns the keys k with k % writers == w, so it knows exactly which of them must be in the map and checks
+ * every insert and delete against that. The readers check the ordered queries: ceiling(k) must never be below k,
+ * floor(k) never above it, and a range must only give keys within its bounds, in ascending order, each with
+ * the value that was inserted with it. In the end the map must hold exactly what the writers left in it.
+ *   java datastr.hashmap.ConcurrentSkipListMapStress [writers] [readers] [operations per thread]
+ */
+
+public final class ConcurrentSkipListMapStress {
+    private static final int KEY_RANGE = 4096;
+    private static final int RANGE_WIDTH = 64;
+
+    // Every key always gets the same value object, so the readers can check a value belongs to its key by identity
+    private static final Integer[] VALUES = new Integer[KEY_RANGE];
+    static { for (int i = 0; i < KEY_RANGE; i++) VALUES[i] = -i; }
+
+    public static void main(String[] args) throws InterruptedException {
+        int writers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int readers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int operations = args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000;
+
+        ConcurrentSkipListMap<Integer, Integer> map = new ConcurrentSkipListMap<>();
+        TreeMap<Integer, Integer>[] expected = new TreeMap[writers];
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[writers + readers];
+
+        for (int w = 0; w < writers; w++) {
+            int owner = w;
+            expected[w] = new TreeMap<>();
+
+            threads[w] = new Thread(() -> {
+                try {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    TreeMap<Integer, Integer> mine = expected[owner];
+
+                    for (int i = 0; i < operations && failure.get() == null; i++) {
+                        int key = random.nextInt(KEY_RANGE / writers) * writers + owner;
+
+                        if (random.nextBoolean()) {
+                            Integer deleted = map.delete(key);
+                            check((deleted != null) == (mine.remove(key) != null), "delete() disagrees with the owner");
+                            check(map.get(key) == null, "A deleted key is still there");
+                        } else {
+                            map.insert(key, valueOf(key));
+                            mine.put(key, valueOf(key));
+                            check(map.get(key) != null, "An inserted key is missing");
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+        }
+
+        for (int r = 0; r < readers; r++) {
+            threads[writers + r] = new Thread(() -> {
+                try {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+
+                    for (int i = 0; i < operations && failure.get() == null; i++) {
+                        int bound = random.nextInt(KEY_RANGE);
+
+                        switch (random.nextInt(3)) {
+                            case 0: {
+                                Integer ceiling = map.ceiling(bound);
+                                check(ceiling == null || ceiling >= bound, "ceiling(" + bound + ") returned " + ceiling);
+                                break;
+                            }
+                            case 1: {
+                                Integer floor = map.floor(bound);
+                                check(floor == null || floor <= bound, "floor(" + bound + ") returned " + floor);
+                                break;
+                            }
+                            default: {
+                                int to = bound + RANGE_WIDTH;
+                                int previous = Integer.MIN_VALUE;
+
+                                for (ConcurrentSkipListMap<Integer, Integer>.Cursor cursor = map.range(bound, to); cursor.advance(); ) {
+                                    int key = cursor.key();
+                                    check(key >= bound && key <= to, "range(" + bound + ", " + to + ") gave " + key);
+                                    check(key > previous, "range() went from " + previous + " to " + key);
+                                    check(cursor.value() == valueOf(key), "Key " + key + " came with " + cursor.value());
+                                    previous = key;
+                                }
+                            }
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+        }
+
+        for (Thread thread: threads) thread.start();
+        start.countDown();
+        for (Thread thread: threads) thread.join();
+        if (failure.get() != null) throw new AssertionError("Stress test failed", failure.get());
+
+        TreeMap<Integer, Integer> all = new TreeMap<>();
+        for (TreeMap<Integer, Integer> mine: expected) all.putAll(mine);
+
+        check(map.size() == all.size(), "Wrong size: " + map.size() + " instead of " + all.size());
+
+        Integer[] previous = { null };
+        int[] seen = { 0 };
+        map.forEach((key, value) -> {
+            check(all.containsKey(key), "Unexpected key: " + key);
+            check(previous[0] == null || previous[0] < key, "forEach() went from " + previous[0] + " to " + key);
+            previous[0] = key;
+            ++seen[0];
+        });
+        check(seen[0] == all.size(), "forEach() saw " + seen[0] + " keys instead of " + all.size());
+
+        System.out.println("Stress test passed");
+    }
+
+    private static Integer valueOf(int key) { return VALUES[key]; }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
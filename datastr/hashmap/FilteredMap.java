@@ -0,0 +1,95 @@
+package datastr.hashmap;
+
+import datastr.set.FilterState;
+import datastr.set.MembershipFilter;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * A map with a membership filter of its keys in front of it. A lookup of a key the filter has never seen is answered
+ * by the filter alone, without walking the map's probe chain to a free cell. Only the filter's false positives
+ * reach the map for keys that are not there.
+ *
+ * When the map outgrows the filter, or a cuckoo filter gets full, a new filter is built from the
+ * map's keys. Keys deleted from the map, or evicted if the map is a cache, stay in a Bloom filter and only add to its
+ * false positives until the next rebuild.
+ */
+
+public final class FilteredMap<K extends Comparable<K>, V> implements Map<K, V> {
+    private final Map<K, V> map;
+    private final FilterState<K> filter;
+
+    /**
+     * @param filter an empty filter, its capacity and false positive rate are used for the filters built later
+     */
+    public FilteredMap(Map<K, V> map, MembershipFilter<K> filter) {
+        this.map = map;
+        this.filter = new FilterState<>(filter, map::size, action -> map.forEach((key, value) -> action.accept(key)));
+    }
+
+    @Override
+    public String toString() { return map.toString(); }
+
+    public boolean isEmpty() { return map.isEmpty(); }
+    public int size() { return map.size(); }
+
+    public MembershipFilter<K> filter() { return filter.filter(); }
+    public long filteredOutCount() { return filter.filteredOutCount(); }
+    public long falsePositiveCount() { return filter.falsePositiveCount(); }
+
+    /**
+     * @return the share of lookups of missing keys that the filter let through to the map
+     */
+    public double observedFalsePositiveRate() { return filter.observedFalsePositiveRate(); }
+
+    public boolean contains(K key) {
+        if (filter.rulesOut(key)) return false;
+
+        boolean found = map.contains(key);
+        if (!found) filter.missed();
+        return found;
+    }
+
+    public void insert(K key, V value) {
+        // A key the filter hasn't seen is new for sure, so the map is only searched on a positive answer.
+        // We can't tell by the map's size, a cache may evict another key to make room
+        boolean isNew = filter.neverSaw(key) || !map.contains(key);
+
+        map.insert(key, value);
+        if (isNew) filter.inserted(key);
+    }
+
+    public V get(K key) {
+        if (filter.rulesOut(key)) return null;
+
+        V value = map.get(key);
+        if (value == null) filter.missed();
+        return value;
+    }
+
+    public V delete(K key) {
+        if (filter.neverSaw(key)) return null;
+
+        V value = map.delete(key);
+        if (value != null) filter.deleted(key);
+        return value;
+    }
+
+    public void insertAll(K[] keys, V[] values) {
+        for (int i = 0; i < keys.length; i++) insert(keys[i], values[i]);
+    }
+
+    public void getAll(K[] keys, V[] results) {
+        for (int i = 0; i < keys.length; i++) results[i] = get(keys[i]);
+    }
+
+    public void deleteAll(K[] keys, V[] results) {
+        for (int i = 0; i < keys.length; i++) results[i] = delete(keys[i]);
+    }
+
+    public void forEach(BiConsumer<? super K, ? super V> action) { map.forEach(action); }
+}
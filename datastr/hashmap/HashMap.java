@@ -1,6 +1,21 @@
 package datastr.hashmap;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Array;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ConcurrentModificationException;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 
 /**
  * Created by Renat Kaitmazov on 10/09/15.
@@ -8,70 +23,105 @@ import java.lang.reflect.Array;
 
 public final class HashMap<K extends Comparable<K>, V> implements Map<K, V> {
 
-    /**
-     *
-     * @param <K> key
-     * @param <V> value
-     *
-     * A class acting as a wrapper for storing data (key and value)
-     */
-    private class Item<K, V> {
-        private K key;
-        private V value;
-        private boolean isDeleted; // An important field to simulate deletion
-
-        Item(K key, V value) {
-            this.key = key;
-            this.value = value;
-            isDeleted = false;
-        }
-
-        public String toString() { return String.format("%s=%s", key.toString(), value.toString()); }
-        public int hashCode() { return key.hashCode(); }
-
-        public boolean equals(Object o) {
-            if (o == this) return true;
-            if (o == null || !(o instanceof Item)) return false;
-            Item<K, V> item = ((Item<K, V>) o);
-
-            return key.equals(item.key) && value.equals(item.value);
-        }
-    }
-
-    private Item<K, V>[] items;
-    private int count;
+    // A cell's state. We can't explicitly delete an item by making its cell empty because it would break
+    // our code for the main operations, so we mark the cell as deleted instead
+    private static final byte EMPTY = 0;
+    private static final byte LIVE = 1;
+    private static final byte DELETED = 2;
+
+    // Keys and values are stored in flat parallel arrays rather than in an item per entry,
+    // so inserting doesn't allocate and a probe only reads the states and the keys arrays
+    private K[] keys;
+    private V[] values;
+    private byte[] states;
+    // While an incremental resize is in progress the old arrays are kept here. Every key is either in the old arrays
+    // or in the new ones, never in both. A moved item is marked as deleted in the old arrays, so that searching
+    // them still works, and cells before migrateIndex have all been moved
+    private K[] oldKeys;
+    private V[] oldValues;
+    private byte[] oldStates;
+    private int migrateIndex;
+    private int count; // Live items in both the new and the old arrays
+    private int deletedCount; // Items marked as deleted still occupy cells, so they count towards fullness
+    private int modCount; // Changed whenever an item is added, deleted or moved, so cursors can tell the map has been modified
     private Class keyClass; // Need it for keySet() method to create a generic array containing keys
     private Class valueClass; // Need it for values() method to create a generic array containing values
+    private final boolean powerOfTwo; // Whether the array's size is a power of two rather than a prime number
+    private final boolean incremental; // Whether the items are moved to the new arrays a few at a time rather than at once
+
+    // The number of old cells migrated by each insert, get or delete during an incremental resize. The new arrays
+    // get at least a quarter of their cells free, so 16 cells per operation finish the migration long before
+    // they fill up again
+    private static final int MIGRATE_CELLS = 16;
+
+    // Batch operations work on blocks of this many keys. The arrays below hold the hash codes and the states of
+    // the first cells of a block, they are reused by every batch so batch operations don't allocate
+    private static final int BATCH_BLOCK = 16;
+    private final int[] batchHashes = new int[BATCH_BLOCK];
+    private final byte[] batchStates = new byte[BATCH_BLOCK];
 
     // If no initial capacity provided we create an array of size 31 (29 will eventually become 31)
     // which is a prime number
     public HashMap() { this(29); }
 
-    public HashMap(int initialCapacity) {
-        /**
-         * Let's imagine that a client wants a set of size 4. In this case a set of size 5 will be created instead
-         * since it is the nearest prime number to 4. The calculateStep() method may return 5. If this is the case, now suppose
-         * that 0th index is occupied. Now let's have a look at the snippet of code from insert() routine. It looks like this:
-         * index   += step;
-         * index   %= size;
-         * 0 is occupied, so the next index is 0 + 5 = 5 and 5 % 5 = 0.
-         * As you can see this situation can create an infinite loop and to avoid this we should check the size a client want a set to be.
-         * It must not be equal to 4;
-         */
-        if (initialCapacity == 4) initialCapacity = 5;
-        int size = getNearestPrimeNumber(initialCapacity << 1);
-        items = (Item<K, V>[]) new Item[size];
+    public HashMap(int initialCapacity) { this(initialCapacity, false); }
+
+    /**
+     * @param powerOfTwo if true, the array's size is always a power of two. In this case an index is taken from the low bits
+     *                   of a mixed hash code with a mask instead of the modulo operation, and resizing doesn't need to look for
+     *                   a prime number. Otherwise the array's size is a prime number.
+     */
+    public HashMap(int initialCapacity, boolean powerOfTwo) { this(initialCapacity, powerOfTwo, false); }
+
+    /**
+     * @param incremental if true, growing the arrays doesn't move all the items at once. The old arrays are kept
+     *                    side by side with the new ones and every insert, get and delete moves a few cells,
+     *                    so no single operation pays for a full rehash.
+     */
+    public HashMap(int initialCapacity, boolean powerOfTwo, boolean incremental) {
+        this.powerOfTwo = powerOfTwo;
+        this.incremental = incremental;
+        int size;
+
+        if (powerOfTwo) {
+            // Fullness is checked before an insert, so 2 cells could both end up occupied and a search would never stop
+            size = 4;
+            while (size < initialCapacity << 1) size <<= 1;
+        } else {
+            /**
+             * Let's imagine that a client wants a set of size 4. In this case a set of size 5 will be created instead
+             * since it is the nearest prime number to 4. The calculateStep() method may return 5. If this is the case, now suppose
+             * that 0th index is occupied. Now let's have a look at the snippet of code from insert() routine. It looks like this:
+             * index   += step;
+             * index   %= size;
+             * 0 is occupied, so the next index is 0 + 5 = 5 and 5 % 5 = 0.
+             * As you can see this situation can create an infinite loop and to avoid this we should check the size a client want a set to be.
+             * It must not be equal to 4;
+             */
+            if (initialCapacity == 4) initialCapacity = 5;
+            // For the same reason the size must be larger than 5, otherwise a step could be equal to it
+            size = getNearestPrimeNumber(Math.max(initialCapacity << 1, 6));
+        }
+
+        allocate(size);
+    }
+
+    private void allocate(int size) {
+        keys = (K[]) new Comparable[size];
+        values = (V[]) new Object[size];
+        states = new byte[size];
     }
 
     public String toString() {
         if (isEmpty()) return "[]";
 
-        StringBuilder builder = new StringBuilder("[");
+        // The whole map is visited anyway, so there is no point in doing it a few cells at a time
+        finishMigration();
 
-        for (int i = 0; i < items.length; i++) {
-            Item<K, V> item = items[i];
+        StringBuilder builder = new StringBuilder("[");
 
-            if (item != null && !item.isDeleted) builder.append(item).append(", ");
+        for (int i = 0; i < keys.length; i++) {
+            if (states[i] == LIVE) builder.append(String.format("%s=%s", keys[i].toString(), values[i].toString())).append(", ");
         }
 
         int s = builder.length() - 2;
@@ -96,166 +146,573 @@ public final class HashMap<K extends Comparable<K>, V> implements Map<K, V> {
         return prime;
     }
 
-    private boolean isPrime(int number) {
+    private static boolean isPrime(int number) {
         for (int i = 2; i * i <= number; i++) if (number % i == 0) return false;
         return true;
     }
 
+    /**
+     * In the power of two mode the index is taken from the low bits, so the hash code is mixed with Hashing.mix().
+     * In the prime mode we just clear the sign bit. Math.abs() won't do since Math.abs(Integer.MIN_VALUE) is negative.
+     */
+    private int hash(K key) {
+        int h = key.hashCode();
+        return powerOfTwo ? Hashing.mix(h) : h & 0x7fffffff;
+    }
+
+    /**
+     * @return an index at which an item with the specified hash code should be stored in an array of the specified length
+     */
+    private int indexFor(int hash, int length) { return powerOfTwo ? hash & (length - 1) : hash % length; }
+
     /**
      * We use the double hashing system to avoid collisions so we need to calculate a step to make a probe if a particular
-     * cell is already occupied
-     * @param key for which we calculate the second hash code
-     * @return second hash code relative to some constant (5 in this case) instead of an array's size
+     * cell is already occupied.
+     * In the prime mode the step is relative to some constant (5 in this case) instead of an array's size.
+     * In the power of two mode the step is taken from the high bits of the hash code and made odd. Any odd step is coprime
+     * with a power of two, so the probe visits every cell before coming back.
+     * @param hash the hash code returned by hash() for which we calculate the second hash code
+     * @return second hash code
+     */
+    private int calculateStep(int hash) { return powerOfTwo ? (hash >>> 16) | 1 : 5 - hash % 5; }
+
+    /**
+     * @return the next index to probe, if we reach the end of the array, we go to the beginning of the array
      */
-    private int calculateStep(K key) { return  5 - Math.abs(key.hashCode()) % 5; }
+    private int nextIndex(int index, int step, int length) {
+        return powerOfTwo ? (index + step) & (length - 1) : (index + step) % length;
+    }
 
     /**
      * The more items in the array, the worse the main operations' efficiency becomes
-     * and to avoid that we expand our array when it is 75% full.
+     * and to avoid that we expand our arrays when they are 75% full.
+     * Items marked as deleted are counted too, since otherwise the array could run out of free cells and a search for
+     * a missing key would never stop. If most of them are deleted ones, we just rebuild the array without growing it.
      */
     private void checkFullness() {
-        if ((double)count / items.length >= 0.75) {
-            Item<K, V>[] newArray = (Item<K, V>[]) new Item[getNearestPrimeNumber(items.length << 1)];
-
-            // Just copying the old items into the new array is not enough
-            // We need to recalculate hash code for each element with respect to the new array's size
-            // since it is now twice as big
-            for (int i = 0; i < items.length; i++) {
+        if ((double)(count + deletedCount) / keys.length >= 0.75) {
+            // The migration should have finished long ago, but a resize must never start while another one is running
+            finishMigration();
 
-                Item<K, V> item = items[i];
+            int newSize = keys.length;
+            if (count >= keys.length >> 1) newSize = grow(keys.length);
 
-                if (item != null && !item.isDeleted) {
-                    int index = Math.abs(item.hashCode()) % newArray.length;
-                    int step = calculateStep(item.key);
+            startResize(newSize);
+            if (!incremental) finishMigration();
+        }
+    }
 
-                    while (newArray[index] != null) {
-                        index += step;
-                        index %= newArray.length;
-                    }
+    private int grow(int size) { return powerOfTwo ? size << 1 : getNearestPrimeNumber(size << 1); }
 
-                    newArray[index] = item;
-                }
+    /**
+     * Creates new arrays of the specified size, the items are moved into them by migrate()
+     */
+    private void startResize(int newSize) {
+        oldKeys = keys;
+        oldValues = values;
+        oldStates = states;
+        migrateIndex = 0;
+        allocate(newSize);
+        deletedCount = 0;
+        ++modCount;
+    }
 
+    /**
+     * Moves the live items of the next cells of the old arrays into the new ones.
+     * Just copying the old items into the new arrays is not enough
+     * We need to recalculate hash code for each element with respect to the new arrays' size
+     * @param cells the number of old cells to look at
+     */
+    private void migrate(int cells) {
+        int end = Math.min(migrateIndex + cells, oldKeys.length);
+
+        for (; migrateIndex < end; migrateIndex++) {
+            if (oldStates[migrateIndex] == LIVE) {
+                K key = oldKeys[migrateIndex];
+                int hash = hash(key);
+                int index = indexFor(hash, keys.length);
+                int step = calculateStep(hash);
+
+                // The key can't be in the new arrays yet, so any free cell will do
+                while (states[index] != EMPTY) index = nextIndex(index, step, keys.length);
+
+                keys[index] = key;
+                values[index] = removeAt(migrateIndex, oldKeys, oldValues, oldStates);
+                states[index] = LIVE;
             }
-            items = newArray;
         }
+
+        // Everything has been moved, let the garbage collector take the old arrays
+        if (migrateIndex == oldKeys.length) {
+            oldKeys = null;
+            oldValues = null;
+            oldStates = null;
+        }
+    }
+
+    private void finishMigration() {
+        if (oldKeys != null) migrate(oldKeys.length);
     }
 
     public void insert(K key, V value) {
         keyClass = key.getClass();
         valueClass = value.getClass();
+        if (oldKeys != null) migrate(MIGRATE_CELLS);
         checkFullness();
-        Item<K, V> newItem = new Item<>(key, value); // Create a new item
 
-        // Calculate a hash code for the item which is actually an index at which the item will be inserted into the array
-        int index = Math.abs(newItem.hashCode()) % items.length;
+        // If the key is still in the old arrays, we take it out of there and insert it into the new ones
+        if (oldKeys != null) {
+            int oldIndex = indexOf(key, oldKeys, oldStates);
+
+            if (oldIndex != -1) {
+                removeAt(oldIndex, oldKeys, oldValues, oldStates);
+                --count;
+            }
+        }
+
+        put(key, value, hash(key));
+    }
+
+    /**
+     * Inserts the key into the new arrays, which must have room for it
+     * @param hash the hash code of the key returned by hash()
+     */
+    private void put(K key, V value, int hash) {
+        // The hash code is actually an index at which the item will be inserted into the array
+        int index = indexFor(hash, keys.length);
 
         // In case there is an item at that index above we calculate the second hash code which is actually a step
-        int step = calculateStep(newItem.key);
+        int step = calculateStep(hash);
+
+        // The first cell marked as deleted along the way, we will reuse it if the key isn't in the map
+        int deletedIndex = -1;
 
         // Until we find a free cell
-        while (items[index] != null) {
+        while (states[index] != EMPTY) {
+            // If there is an item marked as deleted, remember its index, but keep looking since the key may be further
+            if (states[index] == DELETED) {
+                if (deletedIndex == -1) deletedIndex = index;
+            }
             // If we insert a key that's already is the map, we just change its value
-            if (items[index].key.equals(key)) {
-                items[index].value = value;
+            else if (keys[index].equals(key)) {
+                values[index] = value;
                 return;
             }
 
-            // If there is an item marked as deleted, we break the loop and insert the new item at this index
-            if (items[index].isDeleted) break;
-
             // If the cell at the index is already occupied, check another cell
-            index += step;
+            index = nextIndex(index, step, keys.length);
+        }
 
-            // If we reach the end of the array, go to the beginning of the array
-            index %= items.length;
+        if (deletedIndex != -1) {
+            index = deletedIndex;
+            --deletedCount;
         }
 
         // We have found a free cell
-        items[index] = newItem;
+        keys[index] = key;
+        values[index] = value;
+        states[index] = LIVE;
         ++count;
+        ++modCount;
     }
 
-    public V get(K key) {
-        if (isEmpty()) return null;
+    /**
+     * @return the index of the cell of the specified arrays holding the key or -1 if there is no such key
+     */
+    private int indexOf(K key, K[] keys, byte[] states) { return indexOf(key, hash(key), keys, states); }
 
-        // Calculate a hash code which is actually an index at which the item we are looking for might be stored
-        int index = Math.abs(key.hashCode()) % items.length;
+    /**
+     * @param hash the hash code of the key returned by hash()
+     */
+    private int indexOf(K key, int hash, K[] keys, byte[] states) {
+        // The hash code is actually an index at which the item we are looking for might be stored
+        int index = indexFor(hash, keys.length);
 
         // In case the cell at the index above is already occupied by another item
-        int step = calculateStep(key);
-
-        // We assume this is the item we are looking for
-        Item<K, V> item = items[index];
-
-        // If the item is not null and is not marked as deleted, check whether it is the item we need
-        while (item != null && !item.isDeleted) {
-            // If so, just return its value
-            if (key.equals(item.key)) return item.value;
+        int step = calculateStep(hash);
 
+        // If the cell is not empty and is not marked as deleted, check whether it holds the key we need
+        // Cells marked as deleted are skipped, the key may have been inserted after them
+        while (states[index] != EMPTY) {
+            if (states[index] == LIVE && key.equals(keys[index])) return index;
 
             // If not, check others in the array
-            index += step;
-            // Go to the beginning if the index has become greater than the array's length
-            index %= items.length;
-
-            // The next item we are going to test against the specified key
-            item = items[index];
+            index = nextIndex(index, step, keys.length);
         }
 
         // If the item we are looking for is not in the map, we'll eventually bump into free cell
         // and after that we will quit the loop
         // It means we couldn't find the specified key
+        return -1;
+    }
+
+    /**
+     * Marks the cell as deleted and lets the garbage collector take the key and the value
+     * @return the value that was stored in the cell
+     */
+    private V removeAt(int index, K[] keys, V[] values, byte[] states) {
+        V value = values[index];
+        keys[index] = null;
+        values[index] = null;
+        states[index] = DELETED;
+        ++modCount;
+        return value;
+    }
+
+    public V get(K key) {
+        if (isEmpty()) return null;
+        if (oldKeys != null) migrate(MIGRATE_CELLS);
+
+        int index = indexOf(key, keys, states);
+        if (index != -1) return values[index];
+
+        // The key may not have been migrated yet
+        if (oldKeys != null) {
+            index = indexOf(key, oldKeys, oldStates);
+            if (index != -1) return oldValues[index];
+        }
+
         return null;
     }
 
     public V delete(K key) {
         if (isEmpty()) return null;
+        if (oldKeys != null) migrate(MIGRATE_CELLS);
 
-        // Calculate a hash code which is actually an index at which the item we are looking for might be stored
-        int index = Math.abs(key.hashCode()) % items.length;
+        int index = indexOf(key, keys, states);
 
-        // In case the cell at the index above is already occupied by another item
-        int step = calculateStep(key);
+        if (index != -1) {
+            --count;
+            ++deletedCount;
+            return removeAt(index, keys, values, states);
+        }
 
-        // We assume this is the item we are looking for
-        Item<K, V> item = items[index];
+        // The key may not have been migrated yet. Cells marked as deleted in the old arrays
+        // are simply skipped by the migration, so they don't count towards fullness
+        if (oldKeys != null) {
+            index = indexOf(key, oldKeys, oldStates);
 
-        // If the item is not null and is not marked as deleted, check whether it is the item we need
-        while (item != null && !item.isDeleted) {
-            // If so, mark it as deleted and return its value
-            // We can't explicitly delete the item by making it null because it will break our code for the main operations, making it less efficient
-            if (item.key.equals(key)) {
+            if (index != -1) {
                 --count;
-                item.isDeleted = true;
-                return item.value;
+                return removeAt(index, oldKeys, oldValues, oldStates);
             }
+        }
 
-            // If not, check others in the array
-            index += step;
+        // We couldn't find the specified key, so there is nothing to delete and just return null
+        return null;
+    }
+
+    /**
+     * Computes the hash codes of a block of keys and reads the first cell of each of them.
+     * These reads don't depend on each other, so the processor can wait for all of them at once
+     * instead of one after another as it happens when the keys are looked up one by one.
+     */
+    private void prepareBlock(K[] keys, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int hash = hash(keys[i]);
+            batchHashes[i - from] = hash;
+            batchStates[i - from] = states[indexFor(hash, this.keys.length)];
+        }
+    }
 
-            // Go to the beginning if the index has become greater than the array's length
-            index %= items.length;
+    /**
+     * Grows the arrays once for the whole batch, so the keys can then be inserted without checking fullness.
+     * In the incremental mode and while a resize is still in progress the keys are just inserted one by one.
+     */
+    public void insertAll(K[] keys, V[] values) {
+        if (keys.length == 0) return;
 
-            // Test another item
-            item = items[index];
+        if (incremental || oldKeys != null) {
+            for (int i = 0; i < keys.length; i++) insert(keys[i], values[i]);
+            return;
         }
 
-        // If the item we are looking for is not in the map, we'll eventually bump into free cell
-        // and after that we will quit the loop
-        // It means we couldn't find the specified key, so there is nothing to delete and just return null
-        return null;
+        keyClass = keys[0].getClass();
+        valueClass = values[0].getClass();
+
+        if ((double)(count + deletedCount + keys.length) / this.keys.length >= 0.75) {
+            int newSize = this.keys.length;
+            while ((double)(count + keys.length) / newSize >= 0.75) newSize = grow(newSize);
+
+            startResize(newSize);
+            finishMigration();
+        }
+
+        for (int from = 0; from < keys.length; from += BATCH_BLOCK) {
+            int to = Math.min(from + BATCH_BLOCK, keys.length);
+            prepareBlock(keys, from, to);
+
+            for (int i = from; i < to; i++) put(keys[i], values[i], batchHashes[i - from]);
+        }
+    }
+
+    /**
+     * @param results receives the value of every key or null if there is no such key, must be at least as long as keys
+     */
+    public void getAll(K[] keys, V[] results) {
+        if (oldKeys != null) migrate(MIGRATE_CELLS * keys.length);
+
+        if (isEmpty() || oldKeys != null) {
+            for (int i = 0; i < keys.length; i++) results[i] = get(keys[i]);
+            return;
+        }
+
+        for (int from = 0; from < keys.length; from += BATCH_BLOCK) {
+            int to = Math.min(from + BATCH_BLOCK, keys.length);
+            prepareBlock(keys, from, to);
+
+            for (int i = from; i < to; i++) {
+                // If the first cell is free, the key is not in the map
+                int index = batchStates[i - from] == EMPTY ? -1 : indexOf(keys[i], batchHashes[i - from], this.keys, states);
+                results[i] = index != -1 ? values[index] : null;
+            }
+        }
+    }
+
+    /**
+     * @param results receives the deleted value of every key or null if there was no such key, must be at least as long as keys
+     */
+    public void deleteAll(K[] keys, V[] results) {
+        if (oldKeys != null) migrate(MIGRATE_CELLS * keys.length);
+
+        if (isEmpty() || oldKeys != null) {
+            for (int i = 0; i < keys.length; i++) results[i] = delete(keys[i]);
+            return;
+        }
+
+        for (int from = 0; from < keys.length; from += BATCH_BLOCK) {
+            int to = Math.min(from + BATCH_BLOCK, keys.length);
+            prepareBlock(keys, from, to);
+
+            for (int i = from; i < to; i++) {
+                // Deleting never frees a cell, so a first cell that was free is still free
+                int index = batchStates[i - from] == EMPTY ? -1 : indexOf(keys[i], batchHashes[i - from], this.keys, states);
+
+                if (index != -1) {
+                    --count;
+                    ++deletedCount;
+                    results[i] = removeAt(index, this.keys, values, states);
+                } else {
+                    results[i] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * A cursor walks the arrays in place, so unlike keySet() and values() it doesn't copy anything.
+     * It can be reused by calling reset(). If the map is modified other than by changing the value of an existing key,
+     * the cursor throws a ConcurrentModificationException the next time it is advanced.
+     *
+     * Usage:
+     * HashMap.Cursor cursor = map.getCursor();
+     * while (cursor.advance()) process(cursor.key(), cursor.value());
+     */
+    public final class Cursor {
+        private int index;
+        private int expectedModCount;
+
+        private Cursor() { reset(); }
+
+        /**
+         * Puts the cursor before the first item
+         */
+        public void reset() {
+            // The old arrays would have to be walked too, it's simpler to move all their items at once
+            finishMigration();
+            index = -1;
+            expectedModCount = modCount;
+        }
+
+        /**
+         * Moves the cursor to the next item
+         * @return false if there are no more items
+         */
+        public boolean advance() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+
+            while (++index < keys.length) {
+                if (states[index] == LIVE) return true;
+            }
+
+            index = keys.length;
+            return false;
+        }
+
+        public K key() {
+            checkPosition();
+            return keys[index];
+        }
+
+        public V value() {
+            checkPosition();
+            return values[index];
+        }
+
+        private void checkPosition() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            if (index < 0 || index >= keys.length) throw new IllegalStateException("The cursor is not at an item");
+        }
+    }
+
+    public Cursor getCursor() { return new Cursor(); }
+
+    /**
+     * Calls the action for every item in place
+     * @throws ConcurrentModificationException if the action modifies the map
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        finishMigration();
+        int expectedModCount = modCount;
+
+        for (int i = 0; i < keys.length; i++) {
+            if (states[i] == LIVE) {
+                action.accept(keys[i], values[i]);
+                if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+            /*** SNAPSHOTS ***/
+
+    // Header: magic, version, flags, the arrays' length, count, deleted count, body length, checksum.
+    // The checksum covers the body and then every header field before it
+    private static final int SNAPSHOT_MAGIC = 0x484d5350; // "HMSP"
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int SNAPSHOT_CHECKED_HEADER_SIZE = 4 + 4 + 1 + 4 + 4 + 4 + 8;
+    private static final int SNAPSHOT_HEADER_SIZE = SNAPSHOT_CHECKED_HEADER_SIZE + 8;
+    private static final byte SNAPSHOT_POWER_OF_TWO = 1;
+    private static final byte SNAPSHOT_INCREMENTAL = 2;
+
+    /**
+     * Writes the map to a file. The body mirrors the arrays cell by cell: the state of every cell followed by the
+     * encoded key and value if the cell is live. So loading puts every item back at the same index without
+     * rehashing. For this to work the keys' hash codes must be the same in the process that loads the snapshot,
+     * which is the case for strings, boxed numbers and anything with a hashCode() computed from its contents.
+     */
+    public void writeSnapshot(File file, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        finishMigration();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // The header needs the checksum of the body, so the body is written first right after the header's place
+            channel.position(SNAPSHOT_HEADER_SIZE);
+
+            CRC32 crc = new CRC32();
+            OutputStream stream = Channels.newOutputStream(channel);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(stream, crc), 1 << 16));
+
+            for (int i = 0; i < keys.length; i++) {
+                out.writeByte(states[i]);
+
+                if (states[i] == LIVE) {
+                    keyCodec.write(keys[i], out);
+                    valueCodec.write(values[i], out);
+                }
+            }
+
+            out.flush();
+
+            byte flags = (byte) ((powerOfTwo ? SNAPSHOT_POWER_OF_TWO : 0) | (incremental ? SNAPSHOT_INCREMENTAL : 0));
+
+            ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE);
+            header.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).put(flags)
+                  .putInt(keys.length).putInt(count).putInt(deletedCount)
+                  .putLong(channel.position() - SNAPSHOT_HEADER_SIZE);
+            crc.update(header.array(), 0, SNAPSHOT_CHECKED_HEADER_SIZE);
+            header.putLong(crc.getValue());
+            header.flip();
+
+            while (header.hasRemaining()) channel.write(header, header.position());
+        }
+    }
+
+    /**
+     * Maps a file written by writeSnapshot() into memory and restores the map from it. Nothing in the header is
+     * trusted before the checksum is verified, and even then the arrays' length has to be one the map could have
+     * grown to, otherwise a search would probe the wrong cells and miss keys that are there.
+     * @throws IOException if the file is truncated, corrupt or is not a snapshot
+     */
+    public static <K extends Comparable<K>, V> HashMap<K, V> loadSnapshot(File file, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < SNAPSHOT_HEADER_SIZE) throw new IOException("Snapshot is truncated");
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != SNAPSHOT_MAGIC) throw new IOException("Not a snapshot");
+            if (buffer.getInt() != SNAPSHOT_VERSION) throw new IOException("Unsupported snapshot version");
+
+            byte flags = buffer.get();
+            int length = buffer.getInt();
+            int count = buffer.getInt();
+            int deletedCount = buffer.getInt();
+            long bodyLength = buffer.getLong();
+            long checksum = buffer.getLong();
+
+            if (bodyLength != channel.size() - SNAPSHOT_HEADER_SIZE) throw new IOException("Snapshot is truncated");
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate());
+            crc.update(buffer.duplicate().position(0).limit(SNAPSHOT_CHECKED_HEADER_SIZE));
+            if (crc.getValue() != checksum) throw new IOException("Snapshot is corrupt, checksum mismatch");
+
+            if ((flags & ~(SNAPSHOT_POWER_OF_TWO | SNAPSHOT_INCREMENTAL)) != 0) throw new IOException("Snapshot is corrupt, unknown flags");
+            boolean powerOfTwo = (flags & SNAPSHOT_POWER_OF_TWO) != 0;
+            boolean incremental = (flags & SNAPSHOT_INCREMENTAL) != 0;
+
+            // The constructor never makes fewer than 4 cells in the power of two mode and fewer than 7 in the prime one.
+            // Every cell takes at least a byte of the body, so a huge length can't make us allocate huge arrays
+            boolean validLength = powerOfTwo ? length >= 4 && Integer.bitCount(length) == 1 : length >= 7 && isPrime(length);
+            if (!validLength || length > bodyLength) throw new IOException("Snapshot is corrupt, invalid table length");
+            if (count < 0 || deletedCount < 0 || (long) count + deletedCount >= length) throw new IOException("Snapshot is corrupt, invalid counts");
+
+            HashMap<K, V> map = new HashMap<>(1, powerOfTwo, incremental);
+            map.allocate(length);
+
+            try {
+                for (int i = 0; i < length; i++) {
+                    byte state = buffer.get();
+                    if (state != EMPTY && state != LIVE && state != DELETED) throw new IOException("Snapshot is corrupt, unknown cell state");
+                    map.states[i] = state;
+
+                    if (state == LIVE) {
+                        map.keys[i] = keyCodec.read(buffer);
+                        map.values[i] = valueCodec.read(buffer);
+                        ++map.count;
+                    } else if (state == DELETED) {
+                        ++map.deletedCount;
+                    }
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Snapshot is corrupt, the body is shorter than the table", e);
+            }
+
+            if (map.count != count || map.deletedCount != deletedCount || buffer.hasRemaining()) {
+                throw new IOException("Snapshot is corrupt, the table doesn't match the header");
+            }
+
+            if (count > 0) {
+                for (int i = 0; i < length; i++) {
+                    if (map.states[i] == LIVE) {
+                        map.keyClass = map.keys[i].getClass();
+                        map.valueClass = map.values[i].getClass();
+                        break;
+                    }
+                }
+            }
+
+            return map;
+        }
     }
 
     public K[] keySet() {
         if (isEmpty()) return null;
 
+        finishMigration();
         K[] keySet = (K[]) Array.newInstance(keyClass, count);
 
-        for (int i = 0, j = 0; i < items.length; i++) {
-            Item<K, V> item = items[i];
-
-            if (item != null && !item.isDeleted) keySet[j++] = item.key;
+        for (int i = 0, j = 0; i < keys.length; i++) {
+            if (states[i] == LIVE) keySet[j++] = keys[i];
         }
 
         return keySet;
@@ -264,12 +721,11 @@ public final class HashMap<K extends Comparable<K>, V> implements Map<K, V> {
     public V[] values() {
         if (isEmpty()) return null;
 
+        finishMigration();
         V[] values = (V[]) Array.newInstance(valueClass, count);
 
-        for (int i = 0, j = 0; i < items.length; i++) {
-            Item<K, V> item = items[i];
-
-            if (item != null && !item.isDeleted) values[j++] = item.value;
+        for (int i = 0, j = 0; i < keys.length; i++) {
+            if (states[i] == LIVE) values[j++] = this.values[i];
         }
 
         return values;
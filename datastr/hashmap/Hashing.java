@@ -0,0 +1,27 @@
+package datastr.hashmap;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * The hash code mixing shared by the hash tables, sketches and filters of both datastr.hashmap and datastr.set.
+ */
+
+public final class Hashing {
+    private Hashing() {}
+
+    /**
+     * The finalizer of MurmurHash3. Every bit of the hash code affects every bit of the result, so any bits of it
+     * can be used as an index. Tables whose size is a power of two take the index from the low bits with a mask,
+     * and without mixing, keys like 16, 32, 48... which only differ in the high bits would all get the same index.
+     */
+    public static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,190 @@
+package datastr.hashmap;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * A map from int keys to int values.
+ * Unlike HashMap it doesn't box the keys and the values: keys and values are stored
+ * right in parallel arrays and a boolean array tells which cells are occupied.
+ * The arrays' size is always a power of two, so an index is taken from a mixed hash code with a mask.
+ * Collisions are resolved with linear probing, and deletion shifts the following entries back, so no cells are ever
+ * marked as deleted.
+ *
+ * Memory footprint per entry (64-bit JVM with compressed references, the array being 37.5% - 75% full):
+ *   HashMap<Integer, Integer>: a boxed Integer key (16 bytes) and 1.3 - 2.7 cells of 4 + 4 + 1 bytes,
+ *   about 28 - 40 bytes plus a boxed Integer value (16 bytes).
+ *   IntIntHashMap: 1.3 - 2.7 cells of 4 + 4 + 1 bytes, about 12 - 24 bytes.
+ */
+
+public final class IntIntHashMap {
+
+    private static final double LOAD_FACTOR = 0.75;
+
+    private int[] keys;
+    private int[] values;
+    private boolean[] used; // Whether a cell holds an entry, since any int including 0 can be a key
+    private int mask; // The arrays' length is always a power of two, so index = hash & mask
+    private int count;
+
+    public IntIntHashMap() { this(16); }
+
+    public IntIntHashMap(int initialCapacity) {
+        int size = 2;
+        while (size * LOAD_FACTOR <= initialCapacity) size <<= 1;
+        allocate(size);
+    }
+
+    private void allocate(int size) {
+        keys = new int[size];
+        values = new int[size];
+        used = new boolean[size];
+        mask = size - 1;
+    }
+
+    public String toString() {
+        if (isEmpty()) return "[]";
+
+        StringBuilder builder = new StringBuilder("[");
+
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) builder.append(keys[i]).append('=').append(values[i]).append(", ");
+        }
+
+        int s = builder.length() - 2;
+        int e = builder.length();
+        builder.replace(s, e, "]");
+
+        return builder.toString();
+    }
+
+    public boolean isEmpty() { return count == 0; }
+    public int size() { return count; }
+    public boolean contains(int key) { return indexOf(key) != -1; }
+
+    private int indexFor(int key) { return Hashing.mix(key) & mask; }
+
+    /**
+     * When the arrays are 75% full we create new ones which are twice as big and put every entry into them again.
+     */
+    private void checkFullness() {
+        if (count + 1 > keys.length * LOAD_FACTOR) {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            boolean[] oldUsed = used;
+            allocate(oldKeys.length << 1);
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (!oldUsed[i]) continue;
+
+                int index = indexFor(oldKeys[i]);
+                while (used[index]) index = (index + 1) & mask;
+
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+                used[index] = true;
+            }
+        }
+    }
+
+    /**
+     * @return the index of the cell holding the key or -1 if there is no such key
+     */
+    private int indexOf(int key) {
+        int index = indexFor(key);
+
+        // If the key were in the map, it would be found before the first free cell
+        while (used[index]) {
+            if (keys[index] == key) return index;
+            index = (index + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    public void insert(int key, int value) {
+        checkFullness();
+
+        int index = indexFor(key);
+
+        while (used[index]) {
+            // If we insert a key that's already is the map, we just change its value
+            if (keys[index] == key) {
+                values[index] = value;
+                return;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        // We have found a free cell
+        keys[index] = key;
+        values[index] = value;
+        used[index] = true;
+        ++count;
+    }
+
+    /**
+     * @return the value associated with the key or 0 if there is no such key
+     */
+    public int get(int key) {
+        int index = indexOf(key);
+        return index != -1 ? values[index] : 0;
+    }
+
+    /**
+     * @return the value that was associated with the key or 0 if there was no such key
+     */
+    public int delete(int key) {
+        int index = indexOf(key);
+        if (index == -1) return 0;
+
+        int value = values[index];
+
+        // Instead of marking the cell as deleted we move back every following entry that would otherwise become
+        // unreachable, i.e. whose home cell is not between the freed cell and the entry itself
+        int next = (index + 1) & mask;
+
+        while (used[next]) {
+            int home = indexFor(keys[next]);
+
+            if (((next - home) & mask) >= ((next - index) & mask)) {
+                keys[index] = keys[next];
+                values[index] = values[next];
+                index = next;
+            }
+
+            next = (next + 1) & mask;
+        }
+
+        used[index] = false;
+        --count;
+
+        return value;
+    }
+
+    public int[] keySet() {
+        if (isEmpty()) return null;
+
+        int[] keySet = new int[count];
+
+        for (int i = 0, j = 0; i < keys.length; i++) {
+            if (used[i]) keySet[j++] = keys[i];
+        }
+
+        return keySet;
+    }
+
+    public int[] values() {
+        if (isEmpty()) return null;
+
+        int[] values = new int[count];
+
+        for (int i = 0, j = 0; i < keys.length; i++) {
+            if (used[i]) values[j++] = this.values[i];
+        }
+
+        return values;
+    }
+}
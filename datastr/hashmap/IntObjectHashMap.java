@@ -0,0 +1,119 @@
+package datastr.hashmap;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * A map from int keys to object values.
+ * Unlike HashMap it doesn't box the keys: keys are stored
+ * right in parallel arrays, values are stored in an array of references and a boolean array tells which cells are occupied.
+ * The arrays' size is always a power of two, so an index is taken from a mixed hash code with a mask.
+ * Collisions are resolved with linear probing, and deletion shifts the following entries back, so no cells are ever
+ * marked as deleted.
+ *
+ * Memory footprint per entry as measured by PrimitiveMapFootprint (64-bit JVM with compressed references,
+ * the array being 37.5% - 75% full):
+ *   HashMap<Integer, V>: a boxed Integer key (16 bytes) and 1.3 - 2.7 cells of 4 + 4 + 1 bytes,
+ *   about 28 - 40 bytes plus the value object.
+ *   IntObjectHashMap: 1.3 - 2.7 cells of 4 + 4 + 1 bytes, about 12 - 24 bytes plus the value object.
+ */
+
+public final class IntObjectHashMap<V> extends PrimitiveKeyHashMap<V> {
+
+    private int[] keys;
+
+    public IntObjectHashMap() { this(16); }
+
+    public IntObjectHashMap(int initialCapacity) { allocate(sizeFor(initialCapacity)); }
+
+    void allocateKeys(int size) { keys = new int[size]; }
+    Object keys() { return keys; }
+    int homeOf(int index) { return indexFor(keys[index]); }
+    void moveKey(int from, int to) { keys[to] = keys[from]; }
+    void appendKey(StringBuilder builder, int index) { builder.append(keys[index]); }
+
+    void rehash(Object oldKeys, V[] oldValues, boolean[] oldUsed) {
+        int[] keys = (int[]) oldKeys;
+
+        for (int i = 0; i < keys.length; i++) {
+            if (!oldUsed[i]) continue;
+
+            int index = indexFor(keys[i]);
+            while (used[index]) index = (index + 1) & mask;
+
+            this.keys[index] = keys[i];
+            values[index] = oldValues[i];
+            used[index] = true;
+        }
+    }
+
+    public boolean contains(int key) { return indexOf(key) != -1; }
+
+    private int indexFor(int key) { return Hashing.mix(key) & mask; }
+
+    /**
+     * @return the index of the cell holding the key or -1 if there is no such key
+     */
+    private int indexOf(int key) {
+        int index = indexFor(key);
+
+        // If the key were in the map, it would be found before the first free cell
+        while (used[index]) {
+            if (keys[index] == key) return index;
+            index = (index + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    public void insert(int key, V value) {
+        checkFullness();
+
+        int index = indexFor(key);
+
+        while (used[index]) {
+            // If we insert a key that's already is the map, we just change its value
+            if (keys[index] == key) {
+                values[index] = value;
+                return;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        // We have found a free cell
+        keys[index] = key;
+        values[index] = value;
+        used[index] = true;
+        ++count;
+    }
+
+    /**
+     * @return the value associated with the key or null if there is no such key
+     */
+    public V get(int key) {
+        int index = indexOf(key);
+        return index != -1 ? values[index] : null;
+    }
+
+    /**
+     * @return the value that was associated with the key or null if there was no such key
+     */
+    public V delete(int key) {
+        int index = indexOf(key);
+        return index != -1 ? deleteAt(index) : null;
+    }
+
+    public int[] keySet() {
+        if (isEmpty()) return null;
+
+        int[] keySet = new int[count];
+
+        for (int i = 0, j = 0; i < keys.length; i++) {
+            if (used[i]) keySet[j++] = keys[i];
+        }
+
+        return keySet;
+    }
+}
@@ -0,0 +1,119 @@
+package datastr.hashmap;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * A map from long keys to object values.
+ * Unlike HashMap it doesn't box the keys: keys are stored
+ * right in parallel arrays, values are stored in an array of references and a boolean array tells which cells are occupied.
+ * The arrays' size is always a power of two, so an index is taken from a mixed hash code with a mask.
+ * Collisions are resolved with linear probing, and deletion shifts the following entries back, so no cells are ever
+ * marked as deleted.
+ *
+ * Memory footprint per entry as measured by PrimitiveMapFootprint (64-bit JVM with compressed references,
+ * the array being 37.5% - 75% full):
+ *   HashMap<Long, V>: a boxed Long key (24 bytes) and 1.3 - 2.7 cells of 4 + 4 + 1 bytes,
+ *   about 36 - 48 bytes plus the value object.
+ *   LongObjectHashMap: 1.3 - 2.7 cells of 8 + 4 + 1 bytes, about 17 - 35 bytes plus the value object.
+ */
+
+public final class LongObjectHashMap<V> extends PrimitiveKeyHashMap<V> {
+
+    private long[] keys;
+
+    public LongObjectHashMap() { this(16); }
+
+    public LongObjectHashMap(int initialCapacity) { allocate(sizeFor(initialCapacity)); }
+
+    void allocateKeys(int size) { keys = new long[size]; }
+    Object keys() { return keys; }
+    int homeOf(int index) { return indexFor(keys[index]); }
+    void moveKey(int from, int to) { keys[to] = keys[from]; }
+    void appendKey(StringBuilder builder, int index) { builder.append(keys[index]); }
+
+    void rehash(Object oldKeys, V[] oldValues, boolean[] oldUsed) {
+        long[] keys = (long[]) oldKeys;
+
+        for (int i = 0; i < keys.length; i++) {
+            if (!oldUsed[i]) continue;
+
+            int index = indexFor(keys[i]);
+            while (used[index]) index = (index + 1) & mask;
+
+            this.keys[index] = keys[i];
+            values[index] = oldValues[i];
+            used[index] = true;
+        }
+    }
+
+    public boolean contains(long key) { return indexOf(key) != -1; }
+
+    private int indexFor(long key) { return Hashing.mix((int) (key ^ (key >>> 32))) & mask; }
+
+    /**
+     * @return the index of the cell holding the key or -1 if there is no such key
+     */
+    private int indexOf(long key) {
+        int index = indexFor(key);
+
+        // If the key were in the map, it would be found before the first free cell
+        while (used[index]) {
+            if (keys[index] == key) return index;
+            index = (index + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    public void insert(long key, V value) {
+        checkFullness();
+
+        int index = indexFor(key);
+
+        while (used[index]) {
+            // If we insert a key that's already is the map, we just change its value
+            if (keys[index] == key) {
+                values[index] = value;
+                return;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        // We have found a free cell
+        keys[index] = key;
+        values[index] = value;
+        used[index] = true;
+        ++count;
+    }
+
+    /**
+     * @return the value associated with the key or null if there is no such key
+     */
+    public V get(long key) {
+        int index = indexOf(key);
+        return index != -1 ? values[index] : null;
+    }
+
+    /**
+     * @return the value that was associated with the key or null if there was no such key
+     */
+    public V delete(long key) {
+        int index = indexOf(key);
+        return index != -1 ? deleteAt(index) : null;
+    }
+
+    public long[] keySet() {
+        if (isEmpty()) return null;
+
+        long[] keySet = new long[count];
+
+        for (int i = 0, j = 0; i < keys.length; i++) {
+            if (used[i]) keySet[j++] = keys[i];
+        }
+
+        return keySet;
+    }
+}
@@ -1,5 +1,7 @@
 package datastr.hashmap;
 
+import java.util.function.BiConsumer;
+
 /**
  * Created by Renat Kaitmazov on 21/09/15.
  */
@@ -13,4 +15,10 @@ public interface Map<K extends Comparable<K>, V>  {
     public void insert(K key, V value);
     public V get(K key);
     public V delete(K key);
+            /*** BATCH OPERATIONS ***/
+    public void insertAll(K[] keys, V[] values);
+    public void getAll(K[] keys, V[] results);
+    public void deleteAll(K[] keys, V[] results);
+            /*** ITERATION ***/
+    public void forEach(BiConsumer<? super K, ? super V> action);
 }
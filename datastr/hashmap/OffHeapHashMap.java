@@ -0,0 +1,281 @@
+package datastr.hashmap;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * A map from fixed width binary keys to fixed width binary values stored outside the Java heap.
+ *
+ * Every cell of the table is a slot in direct memory laid out as [state][key bytes][value bytes], so the garbage
+ * collector has nothing to scan no matter how many items there are. A direct ByteBuffer can't be larger than 2GB,
+ * so the table is split into chunks, each holding a power of two number of slots, and can grow past the heap limit
+ * (it is bounded by -XX:MaxDirectMemorySize instead).
+ *
+ * Collisions are resolved with double hashing like in HashMap: the table's size is a power of two and the step
+ * is odd, so a probe visits every slot. Deleted slots are marked as deleted and reused by later inserts.
+ *
+ * The native memory of the old chunks is released when the garbage collector takes their ByteBuffer objects.
+ */
+
+public final class OffHeapHashMap {
+    // A slot's state
+    private static final byte EMPTY = 0;
+    private static final byte LIVE = 1;
+    private static final byte DELETED = 2;
+
+    private static final double LOAD_FACTOR = 0.75;
+    private static final int MAX_CHUNK_BYTES = 1 << 30;
+
+    private final int keySize;
+    private final int valueSize;
+    private final int slotSize; // 1 byte of state, then the key, then the value
+
+    private ByteBuffer[] chunks;
+    private int chunkShift; // A slot's chunk is index >>> chunkShift
+    private int chunkMask; // and its position within the chunk is index & chunkMask
+    private int capacity; // The number of slots, always a power of two
+    private int count;
+    private int deletedCount; // Deleted slots still have to be skipped by a search, so they count towards fullness
+
+    public OffHeapHashMap(int keySize, int valueSize) { this(keySize, valueSize, 16); }
+
+    public OffHeapHashMap(int keySize, int valueSize, int initialCapacity) {
+        if (keySize <= 0 || valueSize < 0) throw new IllegalArgumentException("Key size must be positive and value size must not be negative");
+
+        this.keySize = keySize;
+        this.valueSize = valueSize;
+        slotSize = 1 + keySize + valueSize;
+
+        int size = 2;
+        while (size * LOAD_FACTOR <= initialCapacity) size <<= 1;
+        allocate(size);
+    }
+
+    private void allocate(int size) {
+        int slotsPerChunk = 1;
+        while (slotsPerChunk < size && ((long) slotsPerChunk << 1) * slotSize <= MAX_CHUNK_BYTES) slotsPerChunk <<= 1;
+
+        chunkShift = Integer.numberOfTrailingZeros(slotsPerChunk);
+        chunkMask = slotsPerChunk - 1;
+        capacity = size;
+
+        // Direct buffers are filled with zeros, so every slot starts EMPTY
+        chunks = new ByteBuffer[size / slotsPerChunk];
+        for (int i = 0; i < chunks.length; i++) chunks[i] = ByteBuffer.allocateDirect(slotsPerChunk * slotSize);
+    }
+
+    public boolean isEmpty() { return count == 0; }
+    public int size() { return count; }
+    public int keySize() { return keySize; }
+    public int valueSize() { return valueSize; }
+    public boolean contains(byte[] key) { return indexOf(key) != -1; }
+
+    private ByteBuffer chunkOf(int index) { return chunks[index >>> chunkShift]; }
+    private int offsetOf(int index) { return (index & chunkMask) * slotSize; }
+    private byte stateAt(int index) { return chunkOf(index).get(offsetOf(index)); }
+
+    private void checkKey(byte[] key) {
+        if (key.length != keySize) throw new IllegalArgumentException("Key must be " + keySize + " bytes long");
+    }
+
+    private void checkValue(byte[] value) {
+        if (value.length != valueSize) throw new IllegalArgumentException("Value must be " + valueSize + " bytes long");
+    }
+
+    /**
+     * FNV-1a over the key's bytes followed by the finalizer of MurmurHash3, since the index is taken from the low bits
+     * and the step from the high bits
+     */
+    private static int hash(byte[] key) {
+        int h = 0x811c9dc5;
+        for (int i = 0; i < key.length; i++) {
+            h ^= key[i];
+            h *= 0x01000193;
+        }
+
+        return Hashing.mix(h);
+    }
+
+    /**
+     * Any odd step is coprime with a power of two, so the probe visits every slot before coming back
+     */
+    private static int calculateStep(int hash) { return (hash >>> 16) | 1; }
+
+    private boolean keyEquals(int index, byte[] key) {
+        ByteBuffer chunk = chunkOf(index);
+        int offset = offsetOf(index) + 1;
+
+        for (int i = 0; i < keySize; i++) {
+            if (chunk.get(offset + i) != key[i]) return false;
+        }
+
+        return true;
+    }
+
+    private void writeSlot(int index, byte[] key, byte[] value) {
+        ByteBuffer chunk = chunkOf(index);
+        int offset = offsetOf(index);
+
+        chunk.put(offset, LIVE);
+        chunk.put(offset + 1, key);
+        chunk.put(offset + 1 + keySize, value);
+    }
+
+    /**
+     * @return the index of the slot holding the key or -1 if there is no such key
+     */
+    private int indexOf(byte[] key) {
+        checkKey(key);
+        if (isEmpty()) return -1;
+
+        int hash = hash(key);
+        int index = hash & (capacity - 1);
+        int step = calculateStep(hash);
+
+        // Deleted slots are skipped, the key may have been inserted after them
+        for (byte state = stateAt(index); state != EMPTY; state = stateAt(index)) {
+            if (state == LIVE && keyEquals(index, key)) return index;
+            index = (index + step) & (capacity - 1);
+        }
+
+        return -1;
+    }
+
+    /**
+     * When the table is 75% full we create a new one which is twice as big, or of the same size if most of the
+     * occupied slots are deleted ones, and put every live item into it again
+     */
+    private void checkFullness() {
+        if (count + deletedCount + 1 > capacity * LOAD_FACTOR) {
+            ByteBuffer[] oldChunks = chunks;
+            int oldChunkShift = chunkShift;
+            int oldChunkMask = chunkMask;
+            int oldCapacity = capacity;
+
+            allocate(count >= oldCapacity >> 1 ? oldCapacity << 1 : oldCapacity);
+            deletedCount = 0;
+
+            byte[] key = new byte[keySize];
+            byte[] value = new byte[valueSize];
+
+            for (int i = 0; i < oldCapacity; i++) {
+                ByteBuffer chunk = oldChunks[i >>> oldChunkShift];
+                int offset = (i & oldChunkMask) * slotSize;
+                if (chunk.get(offset) != LIVE) continue;
+
+                chunk.get(offset + 1, key);
+                chunk.get(offset + 1 + keySize, value);
+
+                int hash = hash(key);
+                int index = hash & (capacity - 1);
+                int step = calculateStep(hash);
+
+                // The key can't be in the new table yet, so any empty slot will do
+                while (stateAt(index) != EMPTY) index = (index + step) & (capacity - 1);
+
+                writeSlot(index, key, value);
+            }
+        }
+    }
+
+    public void insert(byte[] key, byte[] value) {
+        checkKey(key);
+        checkValue(value);
+        checkFullness();
+
+        int hash = hash(key);
+        int index = hash & (capacity - 1);
+        int step = calculateStep(hash);
+
+        // The first deleted slot along the way, we will reuse it if the key isn't in the map
+        int deletedIndex = -1;
+
+        for (byte state = stateAt(index); state != EMPTY; state = stateAt(index)) {
+            if (state == DELETED) {
+                if (deletedIndex == -1) deletedIndex = index;
+            }
+            // If we insert a key that's already is the map, we just change its value
+            else if (keyEquals(index, key)) {
+                chunkOf(index).put(offsetOf(index) + 1 + keySize, value);
+                return;
+            }
+
+            index = (index + step) & (capacity - 1);
+        }
+
+        if (deletedIndex != -1) {
+            index = deletedIndex;
+            --deletedCount;
+        }
+
+        writeSlot(index, key, value);
+        ++count;
+    }
+
+    /**
+     * Copies the value of the key into the specified array, so a lookup doesn't allocate
+     * @return false if there is no such key, in this case the array is left as it is
+     */
+    public boolean get(byte[] key, byte[] value) {
+        checkValue(value);
+
+        int index = indexOf(key);
+        if (index == -1) return false;
+
+        chunkOf(index).get(offsetOf(index) + 1 + keySize, value);
+        return true;
+    }
+
+    /**
+     * @return the value of the key or null if there is no such key
+     */
+    public byte[] get(byte[] key) {
+        byte[] value = new byte[valueSize];
+        return get(key, value) ? value : null;
+    }
+
+    /**
+     * @return false if there was no such key
+     */
+    public boolean delete(byte[] key) {
+        int index = indexOf(key);
+        if (index == -1) return false;
+
+        chunkOf(index).put(offsetOf(index), DELETED);
+        --count;
+        ++deletedCount;
+        return true;
+    }
+
+            /*** LONG KEYS AND VALUES ***/
+    // Convenience methods for a map created with 8 byte keys and 8 byte values
+
+    private static byte[] toBytes(long l, byte[] bytes) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[i] = (byte) l;
+            l >>>= 8;
+        }
+        return bytes;
+    }
+
+    private static long toLong(byte[] bytes) {
+        long l = 0;
+        for (int i = 0; i < 8; i++) l = (l << 8) | (bytes[i] & 0xff);
+        return l;
+    }
+
+    public void insert(long key, long value) { insert(toBytes(key, new byte[8]), toBytes(value, new byte[8])); }
+    public boolean contains(long key) { return contains(toBytes(key, new byte[8])); }
+    public boolean delete(long key) { return delete(toBytes(key, new byte[8])); }
+
+    /**
+     * @return the value of the key or the specified default value if there is no such key
+     */
+    public long get(long key, long defaultValue) {
+        byte[] value = new byte[8];
+        return get(toBytes(key, new byte[8]), value) ? toLong(value) : defaultValue;
+    }
+}
@@ -0,0 +1,131 @@
+package datastr.hashmap;
+
+import java.lang.reflect.Array;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * The part of IntObjectHashMap and LongObjectHashMap that doesn't depend on the type of the keys: the values,
+ * the occupied cells, growing and deleting with backward shifting. The keys are kept in a primitive array
+ * by each subclass, so the searches, which compare keys, are written there without boxing.
+ */
+
+abstract class PrimitiveKeyHashMap<V> {
+
+    static final double LOAD_FACTOR = 0.75;
+
+    V[] values;
+    boolean[] used; // Whether a cell holds an entry, since any number including 0 can be a key
+    int mask; // The arrays' length is always a power of two, so index = hash & mask
+    int count;
+
+    /**
+     * @return the smallest power of two that holds that many entries without getting 75% full
+     */
+    static int sizeFor(int initialCapacity) {
+        int size = 2;
+        while (size * LOAD_FACTOR <= initialCapacity) size <<= 1;
+        return size;
+    }
+
+    void allocate(int size) {
+        allocateKeys(size);
+        values = (V[]) new Object[size];
+        used = new boolean[size];
+        mask = size - 1;
+    }
+
+    abstract void allocateKeys(int size);
+    abstract int homeOf(int index); // The cell the key in this cell hashes to
+    abstract void moveKey(int from, int to);
+    abstract void appendKey(StringBuilder builder, int index);
+
+    /**
+     * Puts every entry of the old arrays into the freshly allocated ones. The old keys are passed as an Object
+     * since only the subclass knows their type
+     */
+    abstract void rehash(Object oldKeys, V[] oldValues, boolean[] oldUsed);
+    abstract Object keys();
+
+    public String toString() {
+        if (isEmpty()) return "[]";
+
+        StringBuilder builder = new StringBuilder("[");
+
+        for (int i = 0; i < used.length; i++) {
+            if (!used[i]) continue;
+            appendKey(builder, i);
+            builder.append('=').append(values[i]).append(", ");
+        }
+
+        int s = builder.length() - 2;
+        int e = builder.length();
+        builder.replace(s, e, "]");
+
+        return builder.toString();
+    }
+
+    public boolean isEmpty() { return count == 0; }
+    public int size() { return count; }
+
+    /**
+     * When the arrays are 75% full we create new ones which are twice as big and put every entry into them again.
+     */
+    void checkFullness() {
+        if (count + 1 > used.length * LOAD_FACTOR) {
+            Object oldKeys = keys();
+            V[] oldValues = values;
+            boolean[] oldUsed = used;
+
+            allocate(oldUsed.length << 1);
+            rehash(oldKeys, oldValues, oldUsed);
+        }
+    }
+
+    /**
+     * @return the value of the entry in the cell, which is removed
+     */
+    V deleteAt(int index) {
+        V value = values[index];
+
+        // Instead of marking the cell as deleted we move back every following entry that would otherwise become
+        // unreachable, i.e. whose home cell is not between the freed cell and the entry itself
+        int next = (index + 1) & mask;
+
+        while (used[next]) {
+            int home = homeOf(next);
+
+            if (((next - home) & mask) >= ((next - index) & mask)) {
+                moveKey(next, index);
+                values[index] = values[next];
+                index = next;
+            }
+
+            next = (next + 1) & mask;
+        }
+
+        used[index] = false;
+        values[index] = null; // Let the garbage collector take the value
+        --count;
+
+        return value;
+    }
+
+    /**
+     * @param valueClass the class of the array to create, since the values' own class can't be known from V
+     * @return the values in the same order as keySet() returns the keys, null if the map is empty
+     */
+    public V[] values(Class<V> valueClass) {
+        if (isEmpty()) return null;
+
+        V[] values = (V[]) Array.newInstance(valueClass, count);
+
+        for (int i = 0, j = 0; i < used.length; i++) {
+            if (used[i]) values[j++] = this.values[i];
+        }
+
+        return values;
+    }
+}
@@ -0,0 +1,70 @@
+package datastr.hashmap;
+
+import java.lang.ref.Reference;
+import java.util.function.IntFunction;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * Measures the heap taken per entry by HashMap with boxed keys, IntObjectHashMap and LongObjectHashMap.
+ * Every entry shares one value object, so only the map's own memory is counted. The numbers quoted
+ * in IntObjectHashMap and LongObjectHashMap come from running it on a 64-bit JVM with compressed references:
+ *   java datastr.hashmap.PrimitiveMapFootprint [entries]
+ * The heap is measured after a few explicit collections, so run it without other work in the same JVM.
+ */
+
+public final class PrimitiveMapFootprint {
+    private static final Object VALUE = new Object();
+
+    public static void main(String[] args) {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        // Every map is measured at two sizes: right before the arrays grow, when they are 75% full,
+        // and right after it, when they are 37.5% full
+        int full = (int) (Integer.highestOneBit(entries) * 1.5);
+        int sparse = full + 1;
+
+        for (int size : new int[] { full, sparse }) {
+            report("HashMap<Integer, V>", size, n -> {
+                HashMap<Integer, Object> map = new HashMap<>(16, true);
+                for (int i = 0; i < n; i++) map.insert(i, VALUE);
+                return map;
+            });
+
+            report("HashMap<Long, V>", size, n -> {
+                HashMap<Long, Object> map = new HashMap<>(16, true);
+                for (int i = 0; i < n; i++) map.insert((long) i << 20, VALUE); // Large enough not to hit the Long cache
+                return map;
+            });
+
+            report("IntObjectHashMap", size, n -> {
+                IntObjectHashMap<Object> map = new IntObjectHashMap<>();
+                for (int i = 0; i < n; i++) map.insert(i, VALUE);
+                return map;
+            });
+
+            report("LongObjectHashMap", size, n -> {
+                LongObjectHashMap<Object> map = new LongObjectHashMap<>();
+                for (int i = 0; i < n; i++) map.insert((long) i << 20, VALUE);
+                return map;
+            });
+        }
+    }
+
+    private static void report(String name, int entries, IntFunction<Object> build) {
+        long before = usedHeap();
+        Object map = build.apply(entries);
+        long after = usedHeap();
+
+        System.out.printf("%-20s %,10d entries: %6.1f bytes per entry%n", name, entries, (double) (after - before) / entries);
+        Reference.reachabilityFence(map); // Otherwise the map could be collected before the heap is measured
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
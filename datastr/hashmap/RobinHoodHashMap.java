@@ -0,0 +1,285 @@
+package datastr.hashmap;
+
+import java.lang.reflect.Array;
+import java.util.function.BiConsumer;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * An open addressing map that uses Robin Hood hashing with linear probing.
+ * Every item remembers how far it is from its home cell. While inserting, an item that is far from its home
+ * takes the cell of an item that is closer to its home ("takes from the rich, gives to the poor"),
+ * so probe lengths stay short and even.
+ *
+ * Unlike HashMap this map never leaves tombstones behind. When an item is deleted, the items following it
+ * are shifted one cell back (backward shift deletion), so the table does not degrade under insert/delete churn.
+ */
+
+public final class RobinHoodHashMap<K extends Comparable<K>, V> implements Map<K, V> {
+
+    private static class Item<K, V> {
+        private K key;
+        private V value;
+        private int hash;       // Mixed hash code, we keep it to avoid calling hashCode() when moving items around
+        private int distance;   // How many cells the item is away from its home cell
+
+        Item(K key, V value, int hash, int distance) {
+            this.key = key;
+            this.value = value;
+            this.hash = hash;
+            this.distance = distance;
+        }
+
+        public String toString() { return String.format("%s=%s", key.toString(), value.toString()); }
+    }
+
+    private static final double LOAD_FACTOR = 0.75;
+
+    private Item<K, V>[] items;
+    private int mask; // The array's length is always a power of two, so index = hash & mask
+    private int count;
+    private Class keyClass; // Need it for keySet() method to create a generic array containing keys
+    private Class valueClass; // Need it for values() method to create a generic array containing values
+
+    public RobinHoodHashMap() { this(16); }
+
+    public RobinHoodHashMap(int initialCapacity) {
+        int size = 2;
+        while (size * LOAD_FACTOR <= initialCapacity) size <<= 1;
+        items = (Item<K, V>[]) new Item[size];
+        mask = size - 1;
+    }
+
+    public String toString() {
+        if (isEmpty()) return "[]";
+
+        StringBuilder builder = new StringBuilder("[");
+
+        for (int i = 0; i < items.length; i++) {
+            Item<K, V> item = items[i];
+
+            if (item != null) builder.append(item).append(", ");
+        }
+
+        int s = builder.length() - 2;
+        int e = builder.length();
+        builder.replace(s, e, "]");
+
+        return builder.toString();
+    }
+
+    public boolean isEmpty() { return count == 0; }
+    public int size() { return count; }
+    public boolean contains(K key) { return get(key) != null; }
+
+    /**
+     * When the array is 75% full we create a new one which is twice as big.
+     * Each item is put into the new array with respect to the new mask, so we reinsert them one by one.
+     */
+    private void checkFullness() {
+        if (count + 1 > items.length * LOAD_FACTOR) {
+            Item<K, V>[] oldItems = items;
+            items = (Item<K, V>[]) new Item[oldItems.length << 1];
+            mask = items.length - 1;
+
+            for (int i = 0; i < oldItems.length; i++) {
+                Item<K, V> item = oldItems[i];
+
+                if (item != null) {
+                    item.distance = 0;
+                    place(item);
+                }
+            }
+        }
+    }
+
+    /**
+     * Puts an item which is known not to be in the map yet into the array
+     */
+    private void place(Item<K, V> item) {
+        int index = item.hash & mask;
+
+        while (true) {
+            Item<K, V> current = items[index];
+
+            if (current == null) {
+                items[index] = item;
+                return;
+            }
+
+            // The item being placed is further from its home than the current one, so it takes the cell
+            // and the current item goes on looking for another one
+            if (current.distance < item.distance) {
+                items[index] = item;
+                item = current;
+            }
+
+            index = (index + 1) & mask;
+            ++item.distance;
+        }
+    }
+
+    public void insert(K key, V value) {
+        keyClass = key.getClass();
+        valueClass = value.getClass();
+        checkFullness();
+
+        int hash = Hashing.mix(key.hashCode());
+        int index = hash & mask;
+
+        for (int distance = 0; ; distance++) {
+            Item<K, V> item = items[index];
+
+            // We have found a free cell before bumping into an item closer to its home than we are,
+            // so the key is not in the map
+            if (item == null || item.distance < distance) break;
+
+            // If we insert a key that's already is the map, we just change its value
+            if (item.hash == hash && item.key.equals(key)) {
+                item.value = value;
+                return;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        place(new Item<>(key, value, hash, 0));
+        ++count;
+    }
+
+    /**
+     * @return the index of the cell holding the key or -1 if there is no such key
+     */
+    private int indexOf(K key) {
+        int hash = Hashing.mix(key.hashCode());
+        int index = hash & mask;
+
+        // If the key were in the map, it would be found before any item that is closer to its home than we are.
+        // That's why the search stops much earlier than at the first free cell
+        for (int distance = 0; ; distance++) {
+            Item<K, V> item = items[index];
+
+            if (item == null || item.distance < distance) return -1;
+            if (item.hash == hash && item.key.equals(key)) return index;
+
+            index = (index + 1) & mask;
+        }
+    }
+
+    public V get(K key) {
+        if (isEmpty()) return null;
+
+        int index = indexOf(key);
+        return index != -1 ? items[index].value : null;
+    }
+
+    public V delete(K key) {
+        if (isEmpty()) return null;
+
+        int index = indexOf(key);
+        if (index == -1) return null;
+
+        V value = items[index].value;
+
+        // Instead of marking the cell as deleted we shift the following items one cell back
+        // until we reach a free cell or an item which is already at its home
+        int next = (index + 1) & mask;
+
+        while (items[next] != null && items[next].distance > 0) {
+            items[index] = items[next];
+            --items[index].distance;
+            index = next;
+            next = (next + 1) & mask;
+        }
+
+        items[index] = null;
+        --count;
+
+        return value;
+    }
+
+    public void insertAll(K[] keys, V[] values) {
+        for (int i = 0; i < keys.length; i++) insert(keys[i], values[i]);
+    }
+
+    public void getAll(K[] keys, V[] results) {
+        for (int i = 0; i < keys.length; i++) results[i] = get(keys[i]);
+    }
+
+    public void deleteAll(K[] keys, V[] results) {
+        for (int i = 0; i < keys.length; i++) results[i] = delete(keys[i]);
+    }
+
+    /**
+     * Calls the action for every item in place. The action must not insert or delete keys
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (int i = 0; i < items.length; i++) {
+            Item<K, V> item = items[i];
+
+            if (item != null) action.accept(item.key, item.value);
+        }
+    }
+
+    /**
+     * @return the largest number of cells a successful search has to inspect
+     */
+    public int maxProbeLength() {
+        int max = 0;
+
+        for (int i = 0; i < items.length; i++) {
+            Item<K, V> item = items[i];
+
+            if (item != null && item.distance + 1 > max) max = item.distance + 1;
+        }
+
+        return max;
+    }
+
+    /**
+     * @return the average number of cells a successful search has to inspect
+     */
+    public double meanProbeLength() {
+        if (isEmpty()) return 0;
+
+        long total = 0;
+
+        for (int i = 0; i < items.length; i++) {
+            Item<K, V> item = items[i];
+
+            if (item != null) total += item.distance + 1;
+        }
+
+        return (double) total / count;
+    }
+
+    public K[] keySet() {
+        if (isEmpty()) return null;
+
+        K[] keySet = (K[]) Array.newInstance(keyClass, count);
+
+        for (int i = 0, j = 0; i < items.length; i++) {
+            Item<K, V> item = items[i];
+
+            if (item != null) keySet[j++] = item.key;
+        }
+
+        return keySet;
+    }
+
+    public V[] values() {
+        if (isEmpty()) return null;
+
+        V[] values = (V[]) Array.newInstance(valueClass, count);
+
+        for (int i = 0, j = 0; i < items.length; i++) {
+            Item<K, V> item = items[i];
+
+            if (item != null) values[j++] = item.value;
+        }
+
+        return values;
+    }
+}
@@ -1,7 +1,11 @@
 package datastr.hashmap;
 
 
+import datastr.tree.PersistentRedBlackBST;
 import datastr.tree.RedBlackBST;
+import datastr.tree.SortedTreeMap;
+
+import java.util.function.BiConsumer;
 
 /**
  * Created by Renat Kaitmazov on 21/09/15.
@@ -9,7 +13,22 @@ import datastr.tree.RedBlackBST;
 
 
 public final class SortedMap<K extends Comparable<K>, V> implements Map<K, V> {
-    private RedBlackBST.RBTreeDecorator storage = new RedBlackBST.RBTreeDecorator();
+    private final SortedTreeMap<K, V> storage;
+
+    public SortedMap() { this(new RedBlackBST.RBTreeDecorator<>()); }
+
+    /**
+     * @param storage an empty tree to keep the items in, for example a BPlusTree when there are millions of them
+     */
+    public SortedMap(SortedTreeMap<K, V> storage) { this.storage = storage; }
+
+    /**
+     * Builds the map in O(n) from keys in ascending order and their values instead of inserting them one by one
+     * @throws IllegalArgumentException if the keys are not in ascending order
+     */
+    public static <K extends Comparable<K>, V> SortedMap<K, V> fromSorted(K[] keys, V[] values) {
+        return new SortedMap<>(RedBlackBST.RBTreeDecorator.fromSorted(keys, values));
+    }
 
     @Override
     public String toString() { return storage.toString(); }
@@ -19,9 +38,43 @@ public final class SortedMap<K extends Comparable<K>, V> implements Map<K, V> {
     public boolean contains(K key) { return storage.contains(key); }
 
     public void insert(K key, V value) { storage.insert(key, value);}
-    public V get(K key) { return (V)storage.get(key); }
-    public V delete(K key) { return (V)storage.delete(key); }
+    public V get(K key) { return storage.get(key); }
+    public V delete(K key) { return storage.delete(key); }
+
+    public void insertAll(K[] keys, V[] values) { for (int i = 0; i < keys.length; i++) insert(keys[i], values[i]); }
+    public void getAll(K[] keys, V[] results) { for (int i = 0; i < keys.length; i++) results[i] = get(keys[i]); }
+    public void deleteAll(K[] keys, V[] results) { for (int i = 0; i < keys.length; i++) results[i] = delete(keys[i]); }
+
+    public void forEach(BiConsumer<? super K, ? super V> action) { storage.forEach(action); }
+
+    /**
+     * @return a map with the items this one has now, later changes of either map are not seen by the other.
+     * On a PersistentRedBlackBST it takes O(1), the two maps share the tree and only copy the paths they change,
+     * so a reader can walk a snapshot without any locks while writers go on. Other trees are copied in O(n)
+     */
+    public SortedMap<K, V> snapshot() {
+        if (storage instanceof PersistentRedBlackBST) {
+            return new SortedMap<>(((PersistentRedBlackBST<K, V>) storage).snapshot());
+        }
+
+        return isEmpty() ? new SortedMap<>() : fromSorted(keySet(), values());
+    }
+
+    public K[] keySet() { return storage.keySet(); }
+    public V[] values() { return storage.values();}
+
+            /*** ORDER STATISTICS ***/
+    // The trees keep the size of every subtree, so none of these copies the items, they all take O(log n)
+
+    public int rank(K key) { return storage.rank(key); } // The number of keys less than the specified one
+    public K select(int k) { return storage.select(k); } // The k-th smallest key counting from 0
+    public int countInRange(K low, K high) { return storage.countInRange(low, high); } // Both bounds are inclusive
+    public K floor(K key) { return storage.floor(key); }
+    public K ceiling(K key) { return storage.ceiling(key); }
 
-    public K[] keySet() { return (K[])storage.keySet(); }
-    public V[] values() { return (V[])storage.values();}
+    /**
+     * @return a cursor over the items with keys from one to another inclusive in ascending order. It finds the first
+     * one in O(log n) and then moves on lazily. A null bound means there is no bound on that side
+     */
+    public SortedTreeMap.Cursor<K, V> range(K from, K to) { return storage.getCursor(from, to); }
 }
@@ -0,0 +1,202 @@
+package datastr.set;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * A set of non-negative integers stored as a bit array: element i is in the set if bit i is set.
+ * It suits dense ranges, e.g. ids from 0 to n where a good part of them are in the set. The array is as long as
+ * the largest element, so for a few large elements RoaringBitmap is a better choice.
+ *
+ * Set operations on two bitsets combine 64 elements at once with a single OR, AND or AND NOT of two longs.
+ *
+ * Memory footprint per element (64-bit JVM with compressed references):
+ *   OASet<Integer>: an Item (16 bytes), a boxed Integer (16 bytes) and 1.3 - 2.7 cells of 4 bytes, about 37 - 43 bytes.
+ *   BitSet: 1 bit per possible element, so 1/8 of a byte if every element is in the set
+ *   and 1 byte if every eighth one is.
+ */
+
+public final class BitSet implements Set<Integer> {
+    private long[] words; // Element i is bit (i & 63) of words[i >>> 6]
+    private int count;
+
+    public BitSet() { this(64); }
+
+    /**
+     * @param initialCapacity the largest element expected plus one, the array grows if a larger one is inserted
+     */
+    public BitSet(int initialCapacity) { words = new long[Math.max((initialCapacity + 63) >>> 6, 1)]; }
+
+    private BitSet(long[] words) {
+        this.words = words;
+        for (long word: words) count += Long.bitCount(word);
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) return "{}";
+
+        StringBuilder builder = new StringBuilder("{");
+        forEachInt(element -> builder.append(element).append(", "));
+
+        int start   = builder.length() - 2;
+        int end     = builder.length();
+        builder.replace(start, end, "}");
+
+        return builder.toString();
+    }
+
+    public boolean isEmpty() { return count == 0; }
+    public int size() { return count; }
+
+    public boolean contains(Integer element) { return contains(element.intValue()); }
+
+    public boolean contains(int element) {
+        int index = element >>> 6;
+        // A negative element is shifted into a huge index, so it's never found
+        return index < words.length && (words[index] & (1L << element)) != 0; // Java only uses the low 6 bits of the shift
+    }
+
+    public void insert(Integer element) { insert(element.intValue()); }
+
+    public void insert(int element) {
+        if (element < 0) throw new IllegalArgumentException("BitSet can't hold negative numbers: " + element);
+
+        int index = element >>> 6;
+
+        if (index >= words.length) {
+            long[] newWords = new long[Math.max(words.length << 1, index + 1)];
+            System.arraycopy(words, 0, newWords, 0, words.length);
+            words = newWords;
+        }
+
+        if ((words[index] & (1L << element)) == 0) {
+            words[index] |= 1L << element;
+            ++count;
+        }
+    }
+
+    public Integer get(Integer element) { return contains(element.intValue()) ? element : null; }
+
+    public Integer delete(Integer element) { return delete(element.intValue()) ? element : null; }
+
+    /**
+     * @return false if there was no such element
+     */
+    public boolean delete(int element) {
+        if (!contains(element)) return false;
+
+        words[element >>> 6] &= ~(1L << element);
+        --count;
+        return true;
+    }
+
+    /**
+     * Calls the action for every element in ascending order without boxing them.
+     * Every word is scanned for its set bits, so empty words cost one comparison each
+     */
+    public void forEachInt(IntConsumer action) {
+        for (int i = 0; i < words.length; i++) {
+            for (long word = words[i]; word != 0; word &= word - 1) {
+                action.accept((i << 6) + Long.numberOfTrailingZeros(word));
+            }
+        }
+    }
+
+    public void forEach(Consumer<? super Integer> action) { forEachInt(action::accept); }
+
+    public BitSet union(Set<Integer> other) {
+        if (!(other instanceof BitSet)) {
+            BitSet result = new BitSet(words.clone());
+            other.forEach(result::insert);
+            return result;
+        }
+
+        long[] a = words;
+        long[] b = ((BitSet) other).words;
+        long[] result = new long[Math.max(a.length, b.length)];
+
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (i < a.length ? a[i] : 0) | (i < b.length ? b[i] : 0);
+        }
+
+        return new BitSet(result);
+    }
+
+    public BitSet intersection(Set<Integer> other) {
+        if (!(other instanceof BitSet)) {
+            BitSet result = new BitSet(words.length << 6);
+
+            // Walk the smaller set and probe the larger one
+            if (count <= other.size()) forEachInt(element -> { if (other.contains(element)) result.insert(element); });
+            else other.forEach(element -> { if (contains(element.intValue())) result.insert(element); });
+
+            return result;
+        }
+
+        long[] a = words;
+        long[] b = ((BitSet) other).words;
+        long[] result = new long[Math.min(a.length, b.length)];
+
+        for (int i = 0; i < result.length; i++) result[i] = a[i] & b[i];
+
+        return new BitSet(result);
+    }
+
+    public BitSet difference(Set<Integer> other) {
+        if (!(other instanceof BitSet)) {
+            BitSet result = new BitSet(words.length << 6);
+            forEachInt(element -> { if (!other.contains(element)) result.insert(element); });
+            return result;
+        }
+
+        long[] a = words;
+        long[] b = ((BitSet) other).words;
+        long[] result = a.clone();
+
+        for (int i = 0; i < Math.min(a.length, b.length); i++) result[i] &= ~b[i];
+
+        return new BitSet(result);
+    }
+
+    public boolean isSubset(Set<Integer> other) {
+        if (count > other.size()) return false;
+
+        if (!(other instanceof BitSet)) {
+            for (int i = 0; i < words.length; i++) {
+                for (long word = words[i]; word != 0; word &= word - 1) {
+                    if (!other.contains((i << 6) + Long.numberOfTrailingZeros(word))) return false;
+                }
+            }
+            return true;
+        }
+
+        long[] b = ((BitSet) other).words;
+
+        // Every bit set in this set must be set in the other one too
+        for (int i = 0; i < words.length; i++) {
+            if ((words[i] & ~(i < b.length ? b[i] : 0)) != 0) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the elements in ascending order
+     */
+    public int[] toArray() {
+        int[] array = new int[count];
+
+        for (int i = 0, j = 0; i < words.length; i++) {
+            for (long word = words[i]; word != 0; word &= word - 1) {
+                array[j++] = (i << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+
+        return array;
+    }
+}
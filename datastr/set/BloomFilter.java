@@ -0,0 +1,103 @@
+package datastr.set;
+
+import datastr.hashmap.Hashing;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * A Bloom filter: an array of m bits and k hash functions. Inserting an element sets the k bits it hashes to,
+ * an element might be in the filter only if all of its k bits are set.
+ *
+ * For n elements and a false positive rate p the best choice is m = -n * ln(p) / ln(2)^2 bits and k = m / n * ln(2),
+ * that's about 9.6 bits per element for 1% and 14.4 bits for 0.1%.
+ * The k bit indices are derived from two hash values as h1 + i * h2 (Kirsch and Mitzenmacher), which is as good
+ * as k independent hash functions.
+ *
+ * A bit may be shared by several elements, so an element can't be deleted. Inserting more elements than the filter
+ * was built for never fails, but the false positive rate goes up.
+ */
+
+public final class BloomFilter<T> implements MembershipFilter<T> {
+    private final long[] bits;
+    private final long bitCount; // m, a multiple of 64
+    private final int hashCount; // k
+    private final int capacity;
+    private final double falsePositiveRate;
+    private int count;
+
+    public BloomFilter(int capacity) { this(capacity, 0.01); }
+
+    public BloomFilter(int capacity, double falsePositiveRate) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive");
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+
+        this.capacity = capacity;
+        this.falsePositiveRate = falsePositiveRate;
+
+        long m = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        bits = new long[(int) Math.max((m + 63) >>> 6, 1)];
+        bitCount = (long) bits.length << 6;
+        hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BloomFilter(%d of %d elements, %d bits, %d hashes)", count, capacity, bitCount, hashCount);
+    }
+
+    public int size() { return count; }
+    public int capacity() { return capacity; }
+    public int hashCount() { return hashCount; }
+
+    /**
+     * @return the index of the i-th bit of an element with the two specified hash values
+     */
+    private long bitIndex(int h1, int h2, int i) {
+        return ((h1 & 0xffffffffL) + (long) i * (h2 & 0xffffffffL)) % bitCount;
+    }
+
+    public boolean insert(T element) {
+        int h = element.hashCode();
+        int h1 = Hashing.mix(h);
+        int h2 = Hashing.mix(h ^ 0x9e3779b9) | 1; // Odd, so the k indices don't all fall onto one bit
+
+        for (int i = 0; i < hashCount; i++) {
+            long index = bitIndex(h1, h2, i);
+            bits[(int) (index >>> 6)] |= 1L << index;
+        }
+
+        ++count;
+        return true;
+    }
+
+    public boolean mightContain(T element) {
+        int h = element.hashCode();
+        int h1 = Hashing.mix(h);
+        int h2 = Hashing.mix(h ^ 0x9e3779b9) | 1;
+
+        for (int i = 0; i < hashCount; i++) {
+            long index = bitIndex(h1, h2, i);
+            if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * A Bloom filter can't forget an element, so this always returns false and the element keeps its bits
+     */
+    public boolean delete(T element) { return false; }
+
+    /**
+     * @return the probability that all k bits of a missing element are set, (fraction of bits set) ^ k
+     */
+    public double expectedFalsePositiveRate() {
+        long set = 0;
+        for (long word: bits) set += Long.bitCount(word);
+        return Math.pow((double) set / bitCount, hashCount);
+    }
+
+    public BloomFilter<T> withCapacity(int capacity) { return new BloomFilter<>(capacity, falsePositiveRate); }
+}
@@ -0,0 +1,317 @@
+package datastr.set;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+import datastr.hashmap.Hashing;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * A set that can be used by many threads at once without any external synchronization.
+ *
+ * The set is split into segments, every segment is a small open addressing table with linear probing guarded by
+ * its own lock (lock striping). insert() and delete() only lock the segment the element belongs to.
+ * get() and contains() take no locks and never retry: they look at no more cells than the table has, so they are
+ * wait-free.
+ *
+ * An element never moves within a table. A deleted element is replaced with a marker, and growing a segment builds
+ * a new table which is published at once, so a reader always probes a consistent table.
+ */
+
+public final class ConcurrentSet<T> implements Set<T> {
+    // Put in place of a deleted element, so that probes for other elements don't stop at its cell
+    private static final Object DELETED = new Object();
+    private static final double LOAD_FACTOR = 0.75;
+
+    private static final class Segment {
+        private final ReentrantLock lock = new ReentrantLock(); // Only held by writers
+        // The elements of an AtomicReferenceArray are read and written with volatile semantics,
+        // so a reader always sees a fully built element
+        private volatile AtomicReferenceArray<Object> table;
+        private volatile int count; // Only changed under the lock, but read by size() without it
+        private int deletedCount; // Deleted cells still have to be skipped by a probe, so they count towards fullness
+
+        Segment(int size) { table = new AtomicReferenceArray<>(size); }
+    }
+
+    private final Segment[] segments;
+    private final int segmentShift; // The segment index is taken from the high bits of a hash code
+    private final int segmentMask;
+    private volatile Class clazz; // Need it for toArray() method
+
+    public ConcurrentSet() { this(16, 16); }
+
+    public ConcurrentSet(int initialCapacity) { this(initialCapacity, 16); }
+
+    /**
+     * @param concurrencyLevel the number of threads expected to write at the same time.
+     *                         The number of segments is the nearest power of two that is not less than it.
+     */
+    public ConcurrentSet(int initialCapacity, int concurrencyLevel) {
+        int segmentCount = 1;
+        int shift = 0;
+
+        while (segmentCount < concurrencyLevel) {
+            segmentCount <<= 1;
+            ++shift;
+        }
+
+        segmentShift = 32 - shift;
+        segmentMask = segmentCount - 1;
+
+        int perSegment = initialCapacity / segmentCount;
+        int size = 2;
+        while (size * LOAD_FACTOR <= perSegment) size <<= 1;
+
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) segments[i] = new Segment(size);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+
+        for (Segment segment: segments) {
+            AtomicReferenceArray<Object> table = segment.table;
+
+            for (int i = 0; i < table.length(); i++) {
+                Object element = table.get(i);
+                if (element != null && element != DELETED) builder.append(element.toString()).append(", ");
+            }
+        }
+
+        if (builder.length() == 1) return "{}";
+
+        int start   = builder.length() - 2;
+        int end     = builder.length();
+        builder.replace(start, end, "}");
+
+        return builder.toString();
+    }
+
+    public boolean isEmpty() { return size() == 0; }
+
+    /**
+     * @return the sum of the segments' sizes. Since other threads may change the set while we are counting,
+     * the result is only exact if nobody is writing to the set
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment: segments) size += segment.count;
+        return size;
+    }
+
+    public boolean contains(T element) { return get(element) != null; }
+
+    /**
+     * Both the segment index (the high bits) and the index within a segment (the low bits) are taken
+     * from the mixed hash code, so every bit of the original one has to affect both of them
+     */
+    private static int hash(Object element) { return Hashing.mix(element.hashCode()); }
+
+    private Segment segmentFor(int hash) {
+        // With only one segment the shift is 32 which Java treats as 0, so we rely on the mask being 0
+        return segments[(hash >>> segmentShift) & segmentMask];
+    }
+
+    /**
+     * Only called under the segment's lock, so the cell it returns keeps holding the element
+     * @return the index of the cell holding the element or -1 if there is no such element
+     */
+    private static int indexOf(AtomicReferenceArray<Object> table, Object element, int hash) {
+        int mask = table.length() - 1;
+        int index = hash & mask;
+
+        // A table always has free cells, but we never look at more cells than there are, just in case
+        for (int i = 0; i < table.length(); i++) {
+            Object current = table.get(index);
+
+            if (current == null) return -1;
+            if (current != DELETED && current.equals(element)) return index;
+
+            index = (index + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    public T get(T element) {
+        int hash = hash(element);
+        AtomicReferenceArray<Object> table = segmentFor(hash).table;
+        int mask = table.length() - 1;
+        int index = hash & mask;
+
+        // Without the lock a cell can be deleted and reused by another element at any moment, so every cell
+        // is read once and we return exactly what we compared rather than reading the cell again
+        for (int i = 0; i < table.length(); i++) {
+            Object current = table.get(index);
+
+            if (current == null) return null;
+            if (current != DELETED && current.equals(element)) return (T) current;
+
+            index = (index + 1) & mask;
+        }
+
+        return null;
+    }
+
+    public void insert(T element) {
+        clazz = element.getClass();
+        int hash = hash(element);
+        Segment segment = segmentFor(hash);
+
+        segment.lock.lock();
+        try {
+            if (indexOf(segment.table, element, hash) != -1) return;
+
+            if (segment.count + segment.deletedCount + 1 > segment.table.length() * LOAD_FACTOR) rehash(segment);
+
+            AtomicReferenceArray<Object> table = segment.table;
+            int mask = table.length() - 1;
+            int index = hash & mask;
+
+            // The element is not in the table, so the first deleted or free cell will do
+            Object current;
+            while ((current = table.get(index)) != null && current != DELETED) index = (index + 1) & mask;
+
+            if (current == DELETED) --segment.deletedCount;
+
+            table.set(index, element);
+            ++segment.count;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    public T delete(T element) {
+        int hash = hash(element);
+        Segment segment = segmentFor(hash);
+
+        segment.lock.lock();
+        try {
+            AtomicReferenceArray<Object> table = segment.table;
+            int index = indexOf(table, element, hash);
+            if (index == -1) return null;
+
+            T deleted = (T) table.get(index);
+            table.set(index, DELETED);
+            --segment.count;
+            ++segment.deletedCount;
+
+            return deleted;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Builds a new table, twice as big unless most of the occupied cells are deleted ones, and puts every element
+     * of the segment into it. The old table is left untouched, so readers can go on using it until the new one
+     * is published. Must be called under the segment's lock.
+     */
+    private void rehash(Segment segment) {
+        AtomicReferenceArray<Object> oldTable = segment.table;
+        int size = segment.count >= oldTable.length() / 2 ? oldTable.length() << 1 : oldTable.length();
+        AtomicReferenceArray<Object> newTable = new AtomicReferenceArray<>(size);
+        int mask = size - 1;
+
+        for (int i = 0; i < oldTable.length(); i++) {
+            Object element = oldTable.get(i);
+            if (element == null || element == DELETED) continue;
+
+            int index = hash(element) & mask;
+            while (newTable.get(index) != null) index = (index + 1) & mask;
+
+            newTable.set(index, element);
+        }
+
+        segment.deletedCount = 0;
+        segment.table = newTable;
+    }
+
+    /**
+     * Calls the action for every element without taking any locks. Like toArray(), an element inserted or deleted
+     * while the set is being walked may or may not be seen
+     */
+    public void forEach(Consumer<? super T> action) {
+        for (Segment segment: segments) {
+            AtomicReferenceArray<Object> table = segment.table;
+
+            for (int i = 0; i < table.length(); i++) {
+                Object element = table.get(i);
+                if (element != null && element != DELETED) action.accept((T) element);
+            }
+        }
+    }
+
+    public ConcurrentSet<T> union(Set<T> other) {
+        ConcurrentSet<T> result = new ConcurrentSet<>(size() + other.size(), segments.length);
+        forEach(result::insert);
+        other.forEach(result::insert);
+        return result;
+    }
+
+    /**
+     * Every element of the intersection is in both sets, so we walk the smaller one and probe the larger one
+     */
+    public ConcurrentSet<T> intersection(Set<T> other) {
+        int size = size();
+        ConcurrentSet<T> result = new ConcurrentSet<>(Math.min(size, other.size()), segments.length);
+
+        if (size <= other.size()) {
+            forEach(element -> { if (other.contains(element)) result.insert(element); });
+        } else {
+            other.forEach(element -> {
+                T found = get(element);
+                if (found != null) result.insert(found);
+            });
+        }
+
+        return result;
+    }
+
+    public ConcurrentSet<T> difference(Set<T> other) {
+        ConcurrentSet<T> result = new ConcurrentSet<>(size(), segments.length);
+        forEach(element -> { if (!other.contains(element)) result.insert(element); });
+        return result;
+    }
+
+    public boolean isSubset(Set<T> other) {
+        for (Segment segment: segments) {
+            AtomicReferenceArray<Object> table = segment.table;
+
+            for (int i = 0; i < table.length(); i++) {
+                Object element = table.get(i);
+                if (element != null && element != DELETED && !other.contains((T) element)) return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the elements that were in the set while it was being walked. Only exact if nobody is writing to the set
+     */
+    public T[] toArray() {
+        if (isEmpty()) return null;
+
+        ArrayList<T> elements = new ArrayList<>();
+
+        for (Segment segment: segments) {
+            AtomicReferenceArray<Object> table = segment.table;
+
+            for (int i = 0; i < table.length(); i++) {
+                Object element = table.get(i);
+                if (element != null && element != DELETED) elements.add((T) element);
+            }
+        }
+
+        return elements.toArray((T[]) Array.newInstance(clazz, elements.size()));
+    }
+}
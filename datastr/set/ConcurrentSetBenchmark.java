@@ -0,0 +1,268 @@
+package datastr.set;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * A stress test and a throughput benchmark of ConcurrentSet.
+ *
+ * The stress test lets every thread insert and delete its own elements while reading everybody's, so segments
+ * grow and get rebuilt under readers. Each thread checks that its own elements are found as soon as they are
+ * inserted and gone as soon as they are deleted, and in the end the set must hold exactly what the threads left in it.
+ *
+ * The benchmark runs the same mix of lookups, inserts and deletes against ConcurrentSet and against an OASet
+ * behind a single lock, which is what a caller would do without a concurrent set.
+ *   java datastr.set.ConcurrentSetBenchmark [threads] [seconds per run]
+ */
+
+public final class ConcurrentSetBenchmark {
+    private static final int STRESS_OPERATIONS = 200_000; // Per thread
+    private static final int KEY_RANGE = 1 << 20;
+    private static final int LOOKUP_PERCENT = 90; // The rest is split evenly between inserts and deletes
+    private static final int REUSE_ROUNDS = 2_000_000;
+
+    // The two sets under test, with the same operations
+    private interface Target {
+        boolean contains(Integer element);
+        void insert(Integer element);
+        void delete(Integer element);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 2;
+
+        stress(Math.max(2, maxThreads));
+        reuse(Math.max(2, maxThreads));
+        System.out.println("Stress test passed");
+
+        System.out.printf("%-8s %22s %22s%n", "threads", "ConcurrentSet, Mops/s", "locked OASet, Mops/s");
+
+        for (int threads = 1; threads <= maxThreads; threads <<= 1) {
+            ConcurrentSet<Integer> concurrent = new ConcurrentSet<>(KEY_RANGE, threads * 4);
+            OASet<Integer> plain = new OASet<>(KEY_RANGE, true);
+            Object lock = new Object();
+
+            prefill(concurrent::insert);
+            prefill(plain::insert);
+
+            double concurrentRate = throughput(threads, seconds, new Target() {
+                public boolean contains(Integer element) { return concurrent.contains(element); }
+                public void insert(Integer element) { concurrent.insert(element); }
+                public void delete(Integer element) { concurrent.delete(element); }
+            });
+
+            double lockedRate = throughput(threads, seconds, new Target() {
+                public boolean contains(Integer element) { synchronized (lock) { return plain.contains(element); } }
+                public void insert(Integer element) { synchronized (lock) { plain.insert(element); } }
+                public void delete(Integer element) { synchronized (lock) { plain.delete(element); } }
+            });
+
+            System.out.printf("%-8d %22.2f %22.2f%n", threads, concurrentRate, lockedRate);
+        }
+    }
+
+    // Half of the keys are in the set before the run, so lookups hit about half the time
+    private static void prefill(Consumer<Integer> insert) {
+        for (int i = 0; i < KEY_RANGE; i += 2) insert.accept(i);
+    }
+
+    /**
+     * Thread t owns the elements e with e % threads == t, so it knows exactly which of them must be in the set
+     */
+    private static void stress(int threads) throws InterruptedException {
+        ConcurrentSet<Integer> set = new ConcurrentSet<>(16, threads); // Small, so that the segments keep growing
+        HashSet<Integer>[] expected = new HashSet[threads];
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+
+        for (int t = 0; t < threads; t++) {
+            int owner = t;
+            expected[t] = new HashSet<>();
+
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    HashSet<Integer> mine = expected[owner];
+
+                    for (int i = 0; i < STRESS_OPERATIONS; i++) {
+                        int element = random.nextInt(KEY_RANGE / threads) * threads + owner;
+
+                        if (random.nextInt(4) == 0) {
+                            Integer deleted = set.delete(element);
+                            check((deleted != null) == mine.remove(element), "delete() disagrees with the owner");
+                            check(!set.contains(element), "A deleted element is still there");
+                        } else {
+                            set.insert(element);
+                            mine.add(element);
+                            check(set.contains(element), "An inserted element is missing");
+                        }
+
+                        // Somebody else's element, it can be there or not, but the lookup must not break
+                        set.contains(random.nextInt(KEY_RANGE));
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+
+            workers[t].start();
+        }
+
+        start.countDown();
+        for (Thread worker: workers) worker.join();
+        if (failure.get() != null) throw new AssertionError("Stress test failed", failure.get());
+
+        HashSet<Integer> all = new HashSet<>();
+        for (HashSet<Integer> mine: expected) all.addAll(mine);
+
+        check(set.size() == all.size(), "Wrong size: " + set.size() + " instead of " + all.size());
+        for (Integer element: all) check(set.contains(element), "Missing after the run: " + element);
+
+        int[] seen = { 0 };
+        set.forEach(element -> {
+            check(all.contains(element), "Unexpected element: " + element);
+            ++seen[0];
+        });
+        check(seen[0] == all.size(), "forEach() saw " + seen[0] + " elements instead of " + all.size());
+    }
+
+    // Every instance has the same hash code, so they all probe the same cells
+    private static final class Colliding {
+        private final int id;
+
+        Colliding(int id) { this.id = id; }
+
+        @Override public int hashCode() { return 0; }
+        @Override public boolean equals(Object other) { return other instanceof Colliding && ((Colliding) other).id == id; }
+        @Override public String toString() { return "#" + id; }
+    }
+
+    /**
+     * One thread keeps deleting an element and inserting another one with the same hash code, which takes
+     * the deleted cell, then swaps them back. The other threads look both of them up all the time,
+     * and a lookup must give either nothing or an element equal to the one it was asked for,
+     * even if the cell it found the element in has been reused in the meantime.
+     */
+    private static void reuse(int threads) throws InterruptedException {
+        ConcurrentSet<Colliding> set = new ConcurrentSet<>(16, 1);
+        Colliding first = new Colliding(1);
+        Colliding second = new Colliding(2);
+        set.insert(first);
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        AtomicBoolean done = new AtomicBoolean();
+
+        workers[0] = new Thread(() -> {
+            try {
+                start.await();
+
+                for (int i = 0; i < REUSE_ROUNDS && failure.get() == null; i++) {
+                    Colliding deleted = (i & 1) == 0 ? first : second;
+                    Colliding inserted = (i & 1) == 0 ? second : first;
+                    set.delete(deleted);
+                    set.insert(inserted);
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                done.set(true);
+            }
+        });
+
+        for (int t = 1; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+
+                    while (!done.get() && failure.get() == null) {
+                        for (int i = 0; i < 1024; i++) {
+                            Colliding wanted = (i & 1) == 0 ? first : second;
+                            Colliding found = set.get(wanted);
+                            check(found == null || found.equals(wanted), "get(" + wanted + ") returned " + found);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+        }
+
+        for (Thread worker: workers) worker.start();
+        start.countDown();
+        for (Thread worker: workers) worker.join();
+        if (failure.get() != null) throw new AssertionError("Stress test failed", failure.get());
+
+        check(set.size() == 1 && set.contains(first), "Expected only " + first + ", got " + set);
+    }
+
+    /**
+     * @return millions of operations per second of all the threads together
+     */
+    private static double throughput(int threads, double seconds, Target set) throws InterruptedException {
+        long[] operations = new long[threads];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        long duration = (long) (seconds * 1e9);
+
+        for (int t = 0; t < threads; t++) {
+            int index = t;
+
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long done = 0;
+
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                long deadline = System.nanoTime() + duration;
+
+                // The clock is only looked at once per 1024 operations
+                while (System.nanoTime() < deadline) {
+                    for (int i = 0; i < 1024; i++) {
+                        int element = random.nextInt(KEY_RANGE);
+                        int choice = random.nextInt(100);
+
+                        if (choice < LOOKUP_PERCENT) set.contains(element);
+                        else if ((choice & 1) == 0) set.insert(element);
+                        else set.delete(element);
+                    }
+
+                    done += 1024;
+                }
+
+                operations[index] = done;
+            });
+
+            workers[t].start();
+        }
+
+        long began = System.nanoTime();
+        start.countDown();
+        for (Thread worker: workers) worker.join();
+        long elapsed = System.nanoTime() - began;
+
+        long total = 0;
+        for (long count: operations) total += count;
+        return total / (elapsed / 1e9) / 1e6;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
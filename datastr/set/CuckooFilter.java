@@ -0,0 +1,203 @@
+package datastr.set;
+
+import datastr.hashmap.Hashing;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * A cuckoo filter keeps a short fingerprint of every element in a table of buckets of 4 cells.
+ * A fingerprint can be in one of two buckets: i1 = hash(element) and i2 = i1 XOR hash(fingerprint). The second one
+ * can be computed from the first one and the fingerprint alone, so when both buckets are full a fingerprint already
+ * in the table is kicked out to its other bucket to make room (like cuckoo hashing), and so on until a free cell
+ * is found.
+ *
+ * Unlike a Bloom filter an element can be deleted by removing its fingerprint. Only delete elements that were
+ * inserted, deleting a missing element that happens to share a fingerprint would remove someone else's.
+ *
+ * With f bit fingerprints a lookup compares against at most 8 of them, so the false positive rate is about 8 / 2^f.
+ * The fingerprints are stored as chars, so f is at most 16 and the lowest rate is about 0.012%.
+ * The table is filled up to 95%, after that an insert may fail and the filter has to be rebuilt larger.
+ */
+
+public final class CuckooFilter<T> implements MembershipFilter<T> {
+    private static final int BUCKET_SIZE = 4;
+    private static final double LOAD_FACTOR = 0.95;
+    private static final int MAX_KICKS = 500;
+
+    private final char[] table; // Bucket b is cells b * 4 to b * 4 + 3, 0 means a free cell
+    private final int bucketMask; // The number of buckets is a power of two
+    private final int fingerprintBits;
+    private final int capacity;
+    private final double falsePositiveRate;
+    private int count;
+    private int random = 0x2545f491; // The state of a xorshift generator, used to choose which fingerprint to kick out
+
+    // When kicking out fails, the last fingerprint left without a cell is kept here, so that insert doesn't lose it.
+    // While it's there, the filter is full and there is nowhere to keep another homeless fingerprint
+    private char victim;
+    private int victimBucket;
+
+    public CuckooFilter(int capacity) { this(capacity, 0.01); }
+
+    public CuckooFilter(int capacity, double falsePositiveRate) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive");
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+
+        this.capacity = capacity;
+        this.falsePositiveRate = falsePositiveRate;
+
+        int bits = (int) Math.ceil(Math.log(2.0 * BUCKET_SIZE / falsePositiveRate) / Math.log(2));
+        fingerprintBits = Math.max(1, Math.min(bits, 16));
+
+        int buckets = 1;
+        while (buckets * BUCKET_SIZE * LOAD_FACTOR < capacity) buckets <<= 1;
+
+        table = new char[buckets * BUCKET_SIZE];
+        bucketMask = buckets - 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CuckooFilter(%d of %d elements, %d buckets, %d bit fingerprints)",
+                count, capacity, bucketMask + 1, fingerprintBits);
+    }
+
+    public int size() { return count; }
+    public int capacity() { return capacity; }
+    public int fingerprintBits() { return fingerprintBits; }
+
+    // The fingerprint is taken from another mix than the bucket, so that elements in one bucket differ in it
+    private char fingerprint(int hash) {
+        char fingerprint = (char) (Hashing.mix(hash ^ 0x9e3779b9) >>> (32 - fingerprintBits));
+        return fingerprint != 0 ? fingerprint : 1; // 0 marks a free cell
+    }
+
+    // Applying it twice gives the bucket we started from
+    private int otherBucket(int bucket, char fingerprint) { return (bucket ^ Hashing.mix(fingerprint)) & bucketMask; }
+
+    private boolean hasFingerprint(int bucket, char fingerprint) {
+        int start = bucket * BUCKET_SIZE;
+
+        for (int i = start; i < start + BUCKET_SIZE; i++) {
+            if (table[i] == fingerprint) return true;
+        }
+
+        return false;
+    }
+
+    private boolean put(int bucket, char fingerprint) {
+        int start = bucket * BUCKET_SIZE;
+
+        for (int i = start; i < start + BUCKET_SIZE; i++) {
+            if (table[i] == 0) {
+                table[i] = fingerprint;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean remove(int bucket, char fingerprint) {
+        int start = bucket * BUCKET_SIZE;
+
+        for (int i = start; i < start + BUCKET_SIZE; i++) {
+            if (table[i] == fingerprint) {
+                table[i] = 0;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private int nextRandom() {
+        random ^= random << 13;
+        random ^= random >>> 17;
+        random ^= random << 5;
+        return random;
+    }
+
+    /**
+     * @return false if the filter is full. The first element that doesn't fit is still remembered in the victim slot,
+     * but after that an element is only stored if one of its buckets has a free cell. An element this returned
+     * false for may be missing from the filter, so the filter should be rebuilt larger or not trusted anymore
+     */
+    public boolean insert(T element) {
+        int hash = element.hashCode();
+        char fingerprint = fingerprint(hash);
+        int bucket = Hashing.mix(hash) & bucketMask;
+
+        if (put(bucket, fingerprint) || put(otherBucket(bucket, fingerprint), fingerprint)) {
+            ++count;
+            return true;
+        }
+
+        // Kicking out could leave another fingerprint without a cell, and the victim slot is taken
+        if (victim != 0) return false;
+
+        // Both buckets are full. Put the fingerprint in place of a random one and move that one to its other bucket
+        if ((nextRandom() & 1) != 0) bucket = otherBucket(bucket, fingerprint);
+
+        for (int kick = 0; kick < MAX_KICKS; kick++) {
+            int cell = bucket * BUCKET_SIZE + ((nextRandom() >>> 8) & (BUCKET_SIZE - 1));
+            char kicked = table[cell];
+            table[cell] = fingerprint;
+            fingerprint = kicked;
+
+            bucket = otherBucket(bucket, fingerprint);
+
+            if (put(bucket, fingerprint)) {
+                ++count;
+                return true;
+            }
+        }
+
+        victim = fingerprint;
+        victimBucket = bucket;
+        ++count;
+        return false;
+    }
+
+    public boolean mightContain(T element) {
+        int hash = element.hashCode();
+        char fingerprint = fingerprint(hash);
+        int bucket = Hashing.mix(hash) & bucketMask;
+        int other = otherBucket(bucket, fingerprint);
+
+        if (hasFingerprint(bucket, fingerprint) || hasFingerprint(other, fingerprint)) return true;
+        return victim == fingerprint && (victimBucket == bucket || victimBucket == other);
+    }
+
+    public boolean delete(T element) {
+        int hash = element.hashCode();
+        char fingerprint = fingerprint(hash);
+        int bucket = Hashing.mix(hash) & bucketMask;
+        int other = otherBucket(bucket, fingerprint);
+
+        if (victim == fingerprint && (victimBucket == bucket || victimBucket == other)) {
+            victim = 0;
+        } else if (!remove(bucket, fingerprint) && !remove(other, fingerprint)) {
+            return false;
+        } else if (victim != 0) {
+            // A cell has been freed, the victim may fit now
+            if (put(victimBucket, victim) || put(otherBucket(victimBucket, victim), victim)) victim = 0;
+        }
+
+        --count;
+        return true;
+    }
+
+    /**
+     * @return the probability that one of the fingerprints in the two buckets of a missing element matches its own,
+     * there are 8 * (fraction of cells in use) of them on average
+     */
+    public double expectedFalsePositiveRate() {
+        double compared = 2.0 * BUCKET_SIZE * count / table.length;
+        return 1 - Math.pow(1 - 1.0 / ((1 << fingerprintBits) - 1), compared);
+    }
+
+    public CuckooFilter<T> withCapacity(int capacity) { return new CuckooFilter<>(capacity, falsePositiveRate); }
+}
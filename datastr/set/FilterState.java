@@ -0,0 +1,126 @@
+package datastr.set;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+/**
+ * The membership filter in front of a FilteredSet or a FilteredMap, together with everything needed to keep it
+ * in step with the collection: when to rebuild it, what to do when it can't take every element and how often
+ * it saved a lookup. The collection is only seen through its size and a walk over its elements (the keys of a map).
+ *
+ * A filter that couldn't take every element is incomplete. It would answer "definitely not there" for an element
+ * it has lost, so while it is incomplete it is bypassed and every operation goes to the collection.
+ */
+
+public final class FilterState<T> {
+    private static final int MAX_REBUILD_ATTEMPTS = 3;
+
+    private final IntSupplier size;
+    private final Consumer<Consumer<T>> elements;
+    private MembershipFilter<T> filter;
+    private final int initialCapacity;
+    private long filteredOut; // Lookups the filter answered alone
+    private long falsePositives; // Lookups the filter let through but the collection didn't have the element
+    private boolean complete = true;
+    private int writesSinceRebuild;
+
+    /**
+     * @param filter an empty filter, its capacity and false positive rate are used for the filters built later
+     * @param size the number of elements in the collection
+     * @param elements calls an action for every element of the collection
+     */
+    public FilterState(MembershipFilter<T> filter, IntSupplier size, Consumer<Consumer<T>> elements) {
+        this.filter = filter;
+        this.size = size;
+        this.elements = elements;
+        initialCapacity = filter.capacity();
+        if (size.getAsInt() > 0) rebuild();
+    }
+
+    public MembershipFilter<T> filter() { return filter; }
+    public long filteredOutCount() { return filteredOut; }
+    public long falsePositiveCount() { return falsePositives; }
+
+    /**
+     * @return the share of lookups of missing elements that the filter let through to the collection
+     */
+    public double observedFalsePositiveRate() {
+        long negatives = filteredOut + falsePositives;
+        return negatives == 0 ? 0 : (double) falsePositives / negatives;
+    }
+
+    // An empty filter like the one we started with, for a new collection
+    public MembershipFilter<T> emptyFilter() { return filter.withCapacity(initialCapacity); }
+
+    /**
+     * Builds a new filter with room for twice as many elements as the collection has now, so it doesn't have to be
+     * rebuilt again soon. Deleted elements are not in the collection anymore, so they are dropped from the filter.
+     *
+     * A cuckoo filter can refuse an element even when it's far from full: elements with equal hash codes all go to
+     * the same two buckets, and no more than 8 of them fit there however large the table is. So we try a couple of
+     * larger filters, and if the elements still don't fit, the filter is left incomplete until the next rebuild.
+     */
+    private void rebuild() {
+        int capacity = Math.max(initialCapacity, size.getAsInt() << 1);
+        writesSinceRebuild = 0;
+
+        for (int attempt = 0; attempt < MAX_REBUILD_ATTEMPTS; attempt++, capacity <<= 1) {
+            MembershipFilter<T> newFilter = filter.withCapacity(capacity);
+            boolean[] fits = { true };
+            elements.accept(element -> { if (!newFilter.insert(element)) fits[0] = false; });
+
+            filter = newFilter;
+            complete = fits[0];
+            if (complete) return;
+        }
+    }
+
+    // While the filter is incomplete, it's rebuilt after as many writes as there are elements, that's O(1) per write
+    private void afterWrite() {
+        if (++writesSinceRebuild > size.getAsInt()) rebuild();
+    }
+
+    /**
+     * For inserts and deletes: true if the element is definitely not in the collection, nothing is counted
+     */
+    public boolean neverSaw(T element) { return complete && !filter.mightContain(element); }
+
+    /**
+     * For lookups: true if the filter alone answers that the element is not in the collection.
+     * Otherwise the caller looks the element up and calls missed() if it isn't there
+     */
+    public boolean rulesOut(T element) {
+        if (!neverSaw(element)) return false;
+        ++filteredOut;
+        return true;
+    }
+
+    // The collection didn't have an element the filter let through
+    public void missed() { if (complete) ++falsePositives; }
+
+    /**
+     * Called after an element that wasn't in the collection has been put into it
+     */
+    public void inserted(T element) {
+        if (!complete) {
+            afterWrite();
+            return;
+        }
+
+        // The filter counts the elements it was given, including deleted ones it can't forget,
+        // so it gets rebuilt both when the collection outgrows it and when it is clogged with deleted elements
+        if (!filter.insert(element) || filter.size() > filter.capacity()) rebuild();
+    }
+
+    /**
+     * Called after an element has been deleted from the collection
+     */
+    public void deleted(T element) {
+        if (complete) filter.delete(element);
+        else afterWrite();
+    }
+}
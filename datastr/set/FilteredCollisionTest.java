@@ -0,0 +1,79 @@
+package datastr.set;
+
+import datastr.hashmap.FilteredMap;
+import datastr.hashmap.HashMap;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * Checks that a filter in front of a set or a map never hides an element that is there.
+ * "Aa" and "BB" have the same hash code, so do all strings glued from them, and a cuckoo filter can keep
+ * no more than 8 fingerprints with the same hash code. It prints OK or throws an AssertionError.
+ */
+
+public final class FilteredCollisionTest {
+    private static final int KEYS = 16;
+    private static final int DELETED = 10;
+
+    public static void main(String[] args) {
+        String[] keys = collidingKeys(KEYS);
+
+        checkSet(new FilteredSet<>(new OASet<>(), new CuckooFilter<>(64)), keys);
+        checkSet(new FilteredSet<>(new OASet<>(), new BloomFilter<>(64)), keys);
+        checkMap(new FilteredMap<>(new HashMap<String, Integer>(), new CuckooFilter<>(64)), keys);
+        checkMap(new FilteredMap<>(new HashMap<String, Integer>(), new BloomFilter<>(64)), keys);
+
+        System.out.println("OK");
+    }
+
+    // Every string of "Aa" and "BB" blocks has the hash code of "AaAa...", the blocks are picked by the bits of i
+    private static String[] collidingKeys(int count) {
+        int blocks = 32 - Integer.numberOfLeadingZeros(count - 1);
+        String[] keys = new String[count];
+
+        for (int i = 0; i < count; i++) {
+            StringBuilder builder = new StringBuilder();
+            for (int block = 0; block < blocks; block++) builder.append(((i >>> block) & 1) == 0 ? "Aa" : "BB");
+            keys[i] = builder.toString();
+        }
+
+        for (String key : keys) check(key.hashCode() == keys[0].hashCode(), "Hash codes must collide");
+        return keys;
+    }
+
+    private static void checkSet(FilteredSet<String> set, String[] keys) {
+        for (String key : keys) set.insert(key);
+        check(set.size() == keys.length, "All keys must be inserted");
+        for (String key : keys) check(set.contains(key), "Inserted key is missing: " + key);
+
+        for (int i = 0; i < DELETED; i++) check(keys[i].equals(set.delete(keys[i])), "Delete missed: " + keys[i]);
+        check(set.size() == keys.length - DELETED, "Wrong size after deletes: " + set.size());
+
+        for (int i = 0; i < keys.length; i++) check(set.contains(keys[i]) == i >= DELETED, "Wrong answer for: " + keys[i]);
+        for (int i = DELETED; i < keys.length; i++) check(keys[i].equals(set.delete(keys[i])), "Delete missed: " + keys[i]);
+        check(set.isEmpty(), "The set must be empty");
+    }
+
+    private static void checkMap(FilteredMap<String, Integer> map, String[] keys) {
+        for (int i = 0; i < keys.length; i++) map.insert(keys[i], i);
+        check(map.size() == keys.length, "All keys must be inserted");
+        for (int i = 0; i < keys.length; i++) check(Integer.valueOf(i).equals(map.get(keys[i])), "Inserted key is missing: " + keys[i]);
+
+        for (int i = 0; i < DELETED; i++) check(Integer.valueOf(i).equals(map.delete(keys[i])), "Delete missed: " + keys[i]);
+        check(map.size() == keys.length - DELETED, "Wrong size after deletes: " + map.size());
+
+        for (int i = 0; i < keys.length; i++) {
+            Integer value = map.get(keys[i]);
+            check(i < DELETED ? value == null : Integer.valueOf(i).equals(value), "Wrong answer for: " + keys[i]);
+        }
+
+        for (int i = DELETED; i < keys.length; i++) check(Integer.valueOf(i).equals(map.delete(keys[i])), "Delete missed: " + keys[i]);
+        check(map.isEmpty(), "The map must be empty");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,79 @@
+package datastr.set;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+import java.util.function.Consumer;
+
+/**
+ * A set with a membership filter in front of it. A lookup of an element the filter has never seen is answered
+ * by the filter alone, without walking the set's probe chain to a free cell. Only the filter's false positives
+ * reach the set for elements that are not there.
+ *
+ * When the set outgrows the filter, or a cuckoo filter gets full, a new filter is built from the
+ * set's elements. A Bloom filter can't forget deleted elements, they only add to its false positives until
+ * the next rebuild.
+ */
+
+public final class FilteredSet<T> implements Set<T> {
+    private final Set<T> set;
+    private final FilterState<T> filter;
+
+    /**
+     * @param filter an empty filter, its capacity and false positive rate are used for the filters built later
+     */
+    public FilteredSet(Set<T> set, MembershipFilter<T> filter) {
+        this.set = set;
+        this.filter = new FilterState<>(filter, set::size, set::forEach);
+    }
+
+    @Override
+    public String toString() { return set.toString(); }
+
+    public boolean isEmpty() { return set.isEmpty(); }
+    public int size() { return set.size(); }
+    public boolean contains(T element) { return get(element) != null; }
+
+    public MembershipFilter<T> filter() { return filter.filter(); }
+    public long filteredOutCount() { return filter.filteredOutCount(); }
+    public long falsePositiveCount() { return filter.falsePositiveCount(); }
+
+    /**
+     * @return the share of lookups of missing elements that the filter let through to the set
+     */
+    public double observedFalsePositiveRate() { return filter.observedFalsePositiveRate(); }
+
+    public void insert(T element) {
+        // An element the filter hasn't seen is new for sure, so the set is only searched on a positive answer
+        boolean isNew = filter.neverSaw(element) || !set.contains(element);
+
+        set.insert(element);
+        if (isNew) filter.inserted(element);
+    }
+
+    public T get(T element) {
+        if (filter.rulesOut(element)) return null;
+
+        T found = set.get(element);
+        if (found == null) filter.missed();
+        return found;
+    }
+
+    public T delete(T element) {
+        if (filter.neverSaw(element)) return null;
+
+        T deleted = set.delete(element);
+        if (deleted != null) filter.deleted(deleted);
+        return deleted;
+    }
+
+    public void forEach(Consumer<? super T> action) { set.forEach(action); }
+
+    // The results are filtered too, their filters are built from scratch
+
+    public FilteredSet<T> union(Set<T> other) { return new FilteredSet<>(set.union(other), filter.emptyFilter()); }
+    public FilteredSet<T> intersection(Set<T> other) { return new FilteredSet<>(set.intersection(other), filter.emptyFilter()); }
+    public FilteredSet<T> difference(Set<T> other) { return new FilteredSet<>(set.difference(other), filter.emptyFilter()); }
+    public boolean isSubset(Set<T> other) { return set.isSubset(other); }
+}
@@ -0,0 +1,26 @@
+package datastr.set;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * A compact probabilistic summary of a set. If mightContain() says no, the element is definitely not there,
+ * if it says yes, the element is there with a probability of 1 - false positive rate.
+ * So a filter can be put in front of a set or a map to answer most lookups of missing elements without touching it.
+ */
+
+public interface MembershipFilter<T> {
+    /** State Information **/
+    public int size();
+    public int capacity(); // The number of elements the filter was built for
+    public boolean mightContain(T element);
+    public double expectedFalsePositiveRate(); // Computed from the number of elements in the filter now
+
+    /** Main Operations **/
+    public boolean insert(T element); // False if the filter is full and may have lost the element, then it has to be rebuilt larger
+    public boolean delete(T element); // False if the filter can't forget elements or there was no such element
+
+    // An empty filter of the same kind and target false positive rate for the specified number of elements
+    public MembershipFilter<T> withCapacity(int capacity);
+}
@@ -4,7 +4,10 @@ package datastr.set;
  * Created by Renat Kaitmazov on 18/08/15.
  */
 
+import datastr.hashmap.Hashing;
+
 import java.lang.reflect.Array;
+import java.util.function.Consumer;
 
 /**
  * OA in the name of the class stands for Open Addressing.
@@ -41,27 +44,48 @@ public final class OASet<T> implements Set<T> {
 
     private Item<T>[] storage;
     private int count = 0;
+    private int deletedCount = 0; // Items marked as deleted still occupy cells, so they count towards fullness
     private Class clazz; // Need it for toArray() method
+    private final boolean powerOfTwo; // Whether the array's size is a power of two rather than a prime number
 
     public OASet() {
         this(31);
     }
 
     public OASet(int initialCapacity) {
-        /**
-         * Let's imagine that a client wants a set of size 4. In this case a set of size 5 will be created instead
-         * since it is the nearest prime number to 4. The calculateStep() method may return 5. If this is the case, now suppose
-         * that 0th index is occupied. Now let's have a look at the snippet of code from insert() routine. It looks like this:
-         * index   += step;
-         * index   %= size;
-         * 0 is occupied, so the next index is 0 + 5 = 5 and 5 % 5 = 0.
-         * As you can see this situation can create an infinite loop and to avoid this we should check the size a client want a set to be.
-         * It must not be equal to 4;
-         */
-
-        if (initialCapacity == 4) initialCapacity = 5;
-
-        int size    = getNearestPrimeNumber(initialCapacity << 1);
+        this(initialCapacity, false);
+    }
+
+    /**
+     * @param powerOfTwo if true, the array's size is always a power of two. In this case an index is taken from the low bits
+     *                   of a mixed hash code with a mask instead of the modulo operation, and resizing doesn't need to look for
+     *                   a prime number. Otherwise the array's size is a prime number.
+     */
+    public OASet(int initialCapacity, boolean powerOfTwo) {
+        this.powerOfTwo = powerOfTwo;
+        int size;
+
+        if (powerOfTwo) {
+            // Fullness is checked before an insert, so 2 cells could both end up occupied and a search would never stop
+            size = 4;
+            while (size < initialCapacity << 1) size <<= 1;
+        } else {
+            /**
+             * Let's imagine that a client wants a set of size 4. In this case a set of size 5 will be created instead
+             * since it is the nearest prime number to 4. The calculateStep() method may return 5. If this is the case, now suppose
+             * that 0th index is occupied. Now let's have a look at the snippet of code from insert() routine. It looks like this:
+             * index   += step;
+             * index   %= size;
+             * 0 is occupied, so the next index is 0 + 5 = 5 and 5 % 5 = 0.
+             * As you can see this situation can create an infinite loop and to avoid this we should check the size a client want a set to be.
+             * It must not be equal to 4;
+             */
+
+            if (initialCapacity == 4) initialCapacity = 5;
+            // For the same reason the size must be larger than 5, otherwise a step could be equal to it
+            size    = getNearestPrimeNumber(Math.max(initialCapacity << 1, 6));
+        }
+
         storage     = (Item<T>[]) new Item[size];
     }
 
@@ -92,12 +116,29 @@ public final class OASet<T> implements Set<T> {
     public boolean contains(T element) { return get(element) != null; }
 
 
-    private int abs(int value) {
-        return value < 0 ? -value : value;
+    /**
+     * In the power of two mode the index is taken from the low bits, so the hash code is mixed with Hashing.mix().
+     * In the prime mode we just clear the sign bit, since negating Integer.MIN_VALUE gives a negative number again.
+     */
+    private int hash(T element) {
+        int h = element.hashCode();
+        return powerOfTwo ? Hashing.mix(h) : h & 0x7fffffff;
+    }
+
+    private int indexFor(int hash, int size) {
+        return powerOfTwo ? hash & (size - 1) : hash % size;
+    }
+
+    /**
+     * In the power of two mode the step is taken from the high bits of the hash code and made odd.
+     * Any odd step is coprime with a power of two, so the probe visits every cell before coming back.
+     */
+    private int calculateStep(int hash) {
+        return powerOfTwo ? (hash >>> 16) | 1 : 5 - (hash % 5);
     }
 
-    private int calculateStep(T forElement) {
-        return 5 - (abs(forElement.hashCode()) % 5);
+    private int nextIndex(int index, int step, int size) {
+        return powerOfTwo ? (index + step) & (size - 1) : (index + step) % size; // Go to the beginning of the array
     }
 
     private boolean isPrimeNumber(int number) {
@@ -125,31 +166,35 @@ public final class OASet<T> implements Set<T> {
      * When the array is full, we have to create a new one which is twice as big and move all the elements from the old array
      * to the newly created. Just copying won't do since in the insert() method we calculate an index based on the array's size.
      * After creating a new array its size is larger so we need to recalculate indices for each element.
+     * Items marked as deleted are counted too, otherwise the array could run out of free cells. If most of them are
+     * deleted ones, we just rebuild the array without growing it.
      */
 
     private void checkFullness() {
         // Load factor is 0.75
 
-        if (count >= storage.length * 0.75) {
-            int newSize = getNearestPrimeNumber(storage.length * 2);
-            Item<T>[] newArray = (Item<T>[]) new Object[newSize];
+        if (count + deletedCount >= storage.length * 0.75) {
+            int newSize = storage.length;
+            if (count >= storage.length / 2)
+                newSize = powerOfTwo ? storage.length << 1 : getNearestPrimeNumber(storage.length * 2);
+            Item<T>[] newArray = (Item<T>[]) new Item[newSize];
 
             for (int i = 0; i < storage.length; i++) {
                 Item<T> item = storage[i];
                 if (item != null && !item.isDeleted) {
-                    int index = abs(item.hashCode()) % newSize;
-                    int step = calculateStep(item.data);
+                    int hash = hash(item.data);
+                    int index = indexFor(hash, newSize);
+                    int step = calculateStep(hash);
 
-                    while (newArray[index] != null) {
-                        index += step;
-                        index %= newSize; // Go to the beginning of the array
-                    }
+                    while (newArray[index] != null)
+                        index = nextIndex(index, step, newSize);
 
                     newArray[index] = item;
                 }
             }
 
             storage = newArray;
+            deletedCount = 0;
         }
     }
 
@@ -160,21 +205,29 @@ public final class OASet<T> implements Set<T> {
         Item<T> newItem = new Item<>(element);
 
         int size        = storage.length;
-        int index       = abs(element.hashCode()) % size;
-        int step        = calculateStep(newItem.data);
+        int hash        = hash(element);
+        int index       = indexFor(hash, size);
+        int step        = calculateStep(hash);
         Item<T> oldItem = storage[index];
+        int deletedIndex = -1; // The first cell marked as deleted, we reuse it if the element isn't in the set
 
 
-        while (oldItem != null && !oldItem.isDeleted) {
-            if (oldItem.data.equals(element))
+        while (oldItem != null) {
+            if (oldItem.isDeleted) {
+                if (deletedIndex == -1) deletedIndex = index;
+            } else if (oldItem.data.equals(element))
                 return;
 
-            index += step;
-            index %= size;
+            index = nextIndex(index, step, size);
 
             oldItem = storage[index];
         }
 
+        if (deletedIndex != -1) {
+            index = deletedIndex;
+            --deletedCount;
+        }
+
         storage[index] = newItem;
         ++count;
     }
@@ -183,19 +236,20 @@ public final class OASet<T> implements Set<T> {
         if (isEmpty()) return null;
 
         int size        = storage.length;
-        int index       = abs(element.hashCode()) % size;
-        int step        = calculateStep(element);
+        int hash        = hash(element);
+        int index       = indexFor(hash, size);
+        int step        = calculateStep(hash);
 
         while (storage[index] != null) {
-            if (element.equals(storage[index].data)) {
+            if (!storage[index].isDeleted && element.equals(storage[index].data)) {
                 Item<T> item = storage[index];
                 item.isDeleted = true;
                 --count;
+                ++deletedCount;
                 return item.data;
             }
 
-            index += step;
-            index %= size;
+            index = nextIndex(index, step, size);
         }
 
         return null;
@@ -205,13 +259,13 @@ public final class OASet<T> implements Set<T> {
         if (isEmpty()) return null;
 
         int size    = storage.length;
-        int index   = abs(element.hashCode()) % size;
-        int step    = calculateStep(element);
+        int hash    = hash(element);
+        int index   = indexFor(hash, size);
+        int step    = calculateStep(hash);
 
         while (storage[index] != null) {
             if (storage[index].isDeleted || !storage[index].data.equals(element)) {
-                index += step;
-                index %= size;
+                index = nextIndex(index, step, size);
                 continue;
             }
 
@@ -222,6 +276,60 @@ public final class OASet<T> implements Set<T> {
         return null;
     }
 
+    /**
+     * Calls the action for every element in place, so unlike toArray() nothing is copied.
+     * The action must not modify the set.
+     */
+    public void forEach(Consumer<? super T> action) {
+        for (int i = 0; i < storage.length; i++) {
+            if (storage[i] != null && !storage[i].isDeleted)
+                action.accept(storage[i].data);
+        }
+    }
+
+    public OASet<T> union(Set<T> other) {
+        OASet<T> result = new OASet<>(count + other.size(), powerOfTwo);
+        forEach(result::insert);
+        other.forEach(result::insert);
+        return result;
+    }
+
+    /**
+     * Every element of the intersection is in both sets, so we walk the smaller one and probe the larger one
+     */
+    public OASet<T> intersection(Set<T> other) {
+        OASet<T> result = new OASet<>(Math.min(count, other.size()), powerOfTwo);
+
+        if (count <= other.size()) {
+            forEach(element -> { if (other.contains(element)) result.insert(element); });
+        } else {
+            other.forEach(element -> {
+                T found = get(element);
+                if (found != null) result.insert(found);
+            });
+        }
+
+        return result;
+    }
+
+    public OASet<T> difference(Set<T> other) {
+        OASet<T> result = new OASet<>(count, powerOfTwo);
+        forEach(element -> { if (!other.contains(element)) result.insert(element); });
+        return result;
+    }
+
+    public boolean isSubset(Set<T> other) {
+        // A larger set can't fit into a smaller one, no need to probe anything
+        if (count > other.size()) return false;
+
+        for (int i = 0; i < storage.length; i++) {
+            if (storage[i] != null && !storage[i].isDeleted && !other.contains(storage[i].data))
+                return false;
+        }
+
+        return true;
+    }
+
     public T[] toArray() {
         if (isEmpty()) return null;
 
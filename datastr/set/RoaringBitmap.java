@@ -0,0 +1,539 @@
+package datastr.set;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed set of integers in the spirit of Roaring bitmaps.
+ *
+ * An element is split into its high 16 bits and its low 16 bits. All the elements sharing the high bits go into
+ * one container, the containers are kept in an array sorted by the high bits. A container holds the low bits either
+ * as a sorted array of chars (2 bytes per element) while it has at most 4096 elements, or as a bitmap of
+ * 65536 bits (8KB) once it has more, so a container never takes more than 8KB. Unlike BitSet, a few elements
+ * far apart take a few bytes each rather than a bit for every number below them.
+ *
+ * Set operations on two roaring bitmaps go container by container: two bitmap containers are combined 64 elements
+ * at a time with OR, AND or AND NOT of two longs, two array containers are merged like in merge sort.
+ *
+ * The high bits are compared as unsigned numbers, so negative elements come after the positive ones.
+ *
+ * Memory footprint per element (64-bit JVM with compressed references):
+ *   OASet<Integer>: an Item (16 bytes), a boxed Integer (16 bytes) and 1.3 - 2.7 cells of 4 bytes, about 37 - 43 bytes.
+ *   RoaringBitmap: 2 bytes in a sparse container, at most 8KB / 4097 = 2 bytes in a dense one and as little
+ *   as 1/8 of a byte in a full one.
+ */
+
+public final class RoaringBitmap implements Set<Integer> {
+    // An array container with more elements would take more memory than a bitmap one
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1024; // 65536 bits
+
+    /**
+     * Exactly one of the arrays is used. A container has a bitmap if and only if it has more than ARRAY_LIMIT elements
+     */
+    private static final class Container {
+        private char[] values; // The low bits of the elements in ascending order, the array may have free space at the end
+        private long[] bits;
+        private int cardinality;
+
+        private Container(char[] values, long[] bits, int cardinality) {
+            this.values = values;
+            this.bits = bits;
+            this.cardinality = cardinality;
+        }
+
+        /**
+         * @return a container of the values or null if there are none
+         */
+        private static Container ofValues(char[] values, int cardinality) {
+            if (cardinality == 0) return null;
+
+            Container container = new Container(values, null, cardinality);
+            if (cardinality > ARRAY_LIMIT) container.toBitmap();
+            return container;
+        }
+
+        /**
+         * @return a container of the bits or null if none of them is set
+         */
+        private static Container ofBits(long[] bits) {
+            int cardinality = 0;
+            for (long word: bits) cardinality += Long.bitCount(word);
+            if (cardinality == 0) return null;
+
+            Container container = new Container(null, bits, cardinality);
+            if (cardinality <= ARRAY_LIMIT) container.toValues();
+            return container;
+        }
+
+        private Container copy() {
+            return new Container(values != null ? Arrays.copyOf(values, cardinality) : null,
+                    bits != null ? bits.clone() : null, cardinality);
+        }
+
+        private boolean contains(char low) {
+            if (bits != null) return (bits[low >>> 6] & (1L << low)) != 0;
+            return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+        }
+
+        /**
+         * @return a copy of the elements as a bitmap
+         */
+        private long[] copyOfBits() {
+            if (bits != null) return bits.clone();
+
+            long[] copy = new long[BITMAP_WORDS];
+            for (int i = 0; i < cardinality; i++) copy[values[i] >>> 6] |= 1L << values[i];
+            return copy;
+        }
+
+        private void toBitmap() {
+            bits = copyOfBits();
+            values = null;
+        }
+
+        private void toValues() {
+            char[] array = new char[cardinality];
+
+            for (int i = 0, j = 0; i < BITMAP_WORDS; i++) {
+                for (long word = bits[i]; word != 0; word &= word - 1) {
+                    array[j++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+                }
+            }
+
+            values = array;
+            bits = null;
+        }
+
+        /**
+         * @return false if the element is already there
+         */
+        private boolean add(char low) {
+            if (bits == null) {
+                int index = Arrays.binarySearch(values, 0, cardinality, low);
+                if (index >= 0) return false;
+
+                if (cardinality < ARRAY_LIMIT) {
+                    index = -index - 1;
+
+                    if (cardinality == values.length) values = Arrays.copyOf(values, Math.min(values.length << 1, ARRAY_LIMIT));
+
+                    System.arraycopy(values, index, values, index + 1, cardinality - index);
+                    values[index] = low;
+                    ++cardinality;
+                    return true;
+                }
+
+                // The array is full, from now on the container is a bitmap
+                toBitmap();
+            }
+
+            if ((bits[low >>> 6] & (1L << low)) != 0) return false;
+
+            bits[low >>> 6] |= 1L << low;
+            ++cardinality;
+            return true;
+        }
+
+        /**
+         * @return false if there was no such element
+         */
+        private boolean remove(char low) {
+            if (bits == null) {
+                int index = Arrays.binarySearch(values, 0, cardinality, low);
+                if (index < 0) return false;
+
+                System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+                --cardinality;
+                return true;
+            }
+
+            if ((bits[low >>> 6] & (1L << low)) == 0) return false;
+
+            bits[low >>> 6] &= ~(1L << low);
+            if (--cardinality == ARRAY_LIMIT) toValues();
+            return true;
+        }
+
+        private void forEach(int high, IntConsumer action) {
+            if (bits == null) {
+                for (int i = 0; i < cardinality; i++) action.accept(high | values[i]);
+                return;
+            }
+
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                for (long word = bits[i]; word != 0; word &= word - 1) {
+                    action.accept(high | ((i << 6) + Long.numberOfTrailingZeros(word)));
+                }
+            }
+        }
+
+        private static Container union(Container a, Container b) {
+            if (a.bits == null && b.bits == null) {
+                char[] result = new char[a.cardinality + b.cardinality];
+                int i = 0, j = 0, k = 0;
+
+                while (i < a.cardinality && j < b.cardinality) {
+                    if (a.values[i] < b.values[j]) result[k++] = a.values[i++];
+                    else if (a.values[i] > b.values[j]) result[k++] = b.values[j++];
+                    else {
+                        result[k++] = a.values[i++];
+                        ++j;
+                    }
+                }
+
+                while (i < a.cardinality) result[k++] = a.values[i++];
+                while (j < b.cardinality) result[k++] = b.values[j++];
+
+                return ofValues(result, k);
+            }
+
+            // At least one of them is a bitmap, we start with it and add the other one into it
+            if (a.bits == null) {
+                Container temp = a;
+                a = b;
+                b = temp;
+            }
+
+            long[] result = a.bits.clone();
+
+            if (b.bits != null) {
+                for (int i = 0; i < BITMAP_WORDS; i++) result[i] |= b.bits[i];
+            } else {
+                for (int i = 0; i < b.cardinality; i++) result[b.values[i] >>> 6] |= 1L << b.values[i];
+            }
+
+            return ofBits(result);
+        }
+
+        private static Container intersection(Container a, Container b) {
+            if (a.bits != null && b.bits != null) {
+                long[] result = new long[BITMAP_WORDS];
+                for (int i = 0; i < BITMAP_WORDS; i++) result[i] = a.bits[i] & b.bits[i];
+                return ofBits(result);
+            }
+
+            // At least one of them is an array, the result can't be larger than it
+            if (a.bits != null) {
+                Container temp = a;
+                a = b;
+                b = temp;
+            }
+
+            char[] result = new char[a.cardinality];
+            int k = 0;
+
+            if (b.bits != null) {
+                for (int i = 0; i < a.cardinality; i++) {
+                    if (b.contains(a.values[i])) result[k++] = a.values[i];
+                }
+            } else {
+                int i = 0, j = 0;
+
+                while (i < a.cardinality && j < b.cardinality) {
+                    if (a.values[i] < b.values[j]) ++i;
+                    else if (a.values[i] > b.values[j]) ++j;
+                    else {
+                        result[k++] = a.values[i++];
+                        ++j;
+                    }
+                }
+            }
+
+            return ofValues(result, k);
+        }
+
+        private static Container difference(Container a, Container b) {
+            if (a.bits == null) {
+                char[] result = new char[a.cardinality];
+                int k = 0;
+
+                for (int i = 0; i < a.cardinality; i++) {
+                    if (!b.contains(a.values[i])) result[k++] = a.values[i];
+                }
+
+                return ofValues(result, k);
+            }
+
+            long[] result = a.bits.clone();
+
+            if (b.bits != null) {
+                for (int i = 0; i < BITMAP_WORDS; i++) result[i] &= ~b.bits[i];
+            } else {
+                for (int i = 0; i < b.cardinality; i++) result[b.values[i] >>> 6] &= ~(1L << b.values[i]);
+            }
+
+            return ofBits(result);
+        }
+
+        private static boolean isSubset(Container a, Container b) {
+            if (a.cardinality > b.cardinality) return false;
+
+            if (a.bits != null && b.bits != null) {
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    if ((a.bits[i] & ~b.bits[i]) != 0) return false;
+                }
+                return true;
+            }
+
+            // a has fewer elements than b, so if b is an array, a is an array too
+            for (int i = 0; i < a.cardinality; i++) {
+                if (!b.contains(a.values[i])) return false;
+            }
+
+            return true;
+        }
+    }
+
+    private char[] keys = new char[4]; // The high bits of each container's elements in ascending order
+    private Container[] containers = new Container[4];
+    private int size; // The number of containers
+    private int count;
+
+    @Override
+    public String toString() {
+        if (isEmpty()) return "{}";
+
+        StringBuilder builder = new StringBuilder("{");
+        forEachInt(element -> builder.append(element).append(", "));
+
+        int start   = builder.length() - 2;
+        int end     = builder.length();
+        builder.replace(start, end, "}");
+
+        return builder.toString();
+    }
+
+    public boolean isEmpty() { return count == 0; }
+    public int size() { return count; }
+
+    private int indexOf(char key) { return Arrays.binarySearch(keys, 0, size, key); }
+
+    private static char high(int element) { return (char) (element >>> 16); }
+    private static char low(int element) { return (char) element; }
+
+    public boolean contains(Integer element) { return contains(element.intValue()); }
+
+    public boolean contains(int element) {
+        int index = indexOf(high(element));
+        return index >= 0 && containers[index].contains(low(element));
+    }
+
+    public void insert(Integer element) { insert(element.intValue()); }
+
+    public void insert(int element) {
+        char key = high(element);
+        int index = indexOf(key);
+
+        if (index < 0) {
+            index = -index - 1;
+
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size << 1);
+                containers = Arrays.copyOf(containers, size << 1);
+            }
+
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            System.arraycopy(containers, index, containers, index + 1, size - index);
+            keys[index] = key;
+            containers[index] = new Container(new char[4], null, 0);
+            ++size;
+        }
+
+        if (containers[index].add(low(element))) ++count;
+    }
+
+    public Integer get(Integer element) { return contains(element.intValue()) ? element : null; }
+
+    public Integer delete(Integer element) { return delete(element.intValue()) ? element : null; }
+
+    /**
+     * @return false if there was no such element
+     */
+    public boolean delete(int element) {
+        int index = indexOf(high(element));
+        if (index < 0 || !containers[index].remove(low(element))) return false;
+
+        --count;
+
+        // An empty container is removed
+        if (containers[index].cardinality == 0) {
+            System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+            System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+            containers[--size] = null;
+        }
+
+        return true;
+    }
+
+    /**
+     * Puts a container after all the others, the result of a set operation is built this way
+     */
+    private void append(char key, Container container) {
+        if (container == null) return;
+
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size << 1);
+            containers = Arrays.copyOf(containers, size << 1);
+        }
+
+        keys[size] = key;
+        containers[size++] = container;
+        count += container.cardinality;
+    }
+
+    /**
+     * Calls the action for every element without boxing them
+     */
+    public void forEachInt(IntConsumer action) {
+        for (int i = 0; i < size; i++) containers[i].forEach(keys[i] << 16, action);
+    }
+
+    public void forEach(Consumer<? super Integer> action) { forEachInt(action::accept); }
+
+    public RoaringBitmap union(Set<Integer> other) {
+        RoaringBitmap result = new RoaringBitmap();
+
+        if (!(other instanceof RoaringBitmap)) {
+            for (int i = 0; i < size; i++) result.append(keys[i], containers[i].copy());
+            other.forEach(result::insert);
+            return result;
+        }
+
+        RoaringBitmap b = (RoaringBitmap) other;
+        int i = 0, j = 0;
+
+        while (i < size && j < b.size) {
+            if (keys[i] < b.keys[j]) {
+                result.append(keys[i], containers[i].copy());
+                ++i;
+            } else if (keys[i] > b.keys[j]) {
+                result.append(b.keys[j], b.containers[j].copy());
+                ++j;
+            } else {
+                result.append(keys[i], Container.union(containers[i], b.containers[j]));
+                ++i;
+                ++j;
+            }
+        }
+
+        for (; i < size; i++) result.append(keys[i], containers[i].copy());
+        for (; j < b.size; j++) result.append(b.keys[j], b.containers[j].copy());
+
+        return result;
+    }
+
+    public RoaringBitmap intersection(Set<Integer> other) {
+        RoaringBitmap result = new RoaringBitmap();
+
+        if (!(other instanceof RoaringBitmap)) {
+            // Walk the smaller set and probe the larger one
+            if (count <= other.size()) forEachInt(element -> { if (other.contains(element)) result.insert(element); });
+            else other.forEach(element -> { if (contains(element.intValue())) result.insert(element); });
+
+            return result;
+        }
+
+        RoaringBitmap b = (RoaringBitmap) other;
+        int i = 0, j = 0;
+
+        // Only the containers both sets have can give anything
+        while (i < size && j < b.size) {
+            if (keys[i] < b.keys[j]) ++i;
+            else if (keys[i] > b.keys[j]) ++j;
+            else {
+                result.append(keys[i], Container.intersection(containers[i], b.containers[j]));
+                ++i;
+                ++j;
+            }
+        }
+
+        return result;
+    }
+
+    public RoaringBitmap difference(Set<Integer> other) {
+        RoaringBitmap result = new RoaringBitmap();
+
+        if (!(other instanceof RoaringBitmap)) {
+            forEachInt(element -> { if (!other.contains(element)) result.insert(element); });
+            return result;
+        }
+
+        RoaringBitmap b = (RoaringBitmap) other;
+        int j = 0;
+
+        for (int i = 0; i < size; i++) {
+            while (j < b.size && b.keys[j] < keys[i]) ++j;
+
+            if (j < b.size && b.keys[j] == keys[i]) result.append(keys[i], Container.difference(containers[i], b.containers[j]));
+            else result.append(keys[i], containers[i].copy());
+        }
+
+        return result;
+    }
+
+    public boolean isSubset(Set<Integer> other) {
+        if (count > other.size()) return false;
+
+        if (!(other instanceof RoaringBitmap)) {
+            for (int i = 0; i < size; i++) {
+                Container container = containers[i];
+                int high = keys[i] << 16;
+
+                if (container.bits == null) {
+                    for (int k = 0; k < container.cardinality; k++) {
+                        if (!other.contains(high | container.values[k])) return false;
+                    }
+                } else {
+                    for (int k = 0; k < BITMAP_WORDS; k++) {
+                        for (long word = container.bits[k]; word != 0; word &= word - 1) {
+                            if (!other.contains(high | ((k << 6) + Long.numberOfTrailingZeros(word)))) return false;
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+
+        RoaringBitmap b = (RoaringBitmap) other;
+        int j = 0;
+
+        for (int i = 0; i < size; i++) {
+            while (j < b.size && b.keys[j] < keys[i]) ++j;
+
+            // Every container of this set must be a subset of the other set's container with the same high bits
+            if (j == b.size || b.keys[j] != keys[i] || !Container.isSubset(containers[i], b.containers[j])) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the elements in the order of their containers, that is, negative ones after the positive ones
+     */
+    public int[] toArray() {
+        int[] array = new int[count];
+
+        for (int i = 0, j = 0; i < size; i++) {
+            Container container = containers[i];
+            int high = keys[i] << 16;
+
+            if (container.bits == null) {
+                for (int k = 0; k < container.cardinality; k++) array[j++] = high | container.values[k];
+            } else {
+                for (int k = 0; k < BITMAP_WORDS; k++) {
+                    for (long word = container.bits[k]; word != 0; word &= word - 1) {
+                        array[j++] = high | ((k << 6) + Long.numberOfTrailingZeros(word));
+                    }
+                }
+            }
+        }
+
+        return array;
+    }
+}
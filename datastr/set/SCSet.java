@@ -5,23 +5,33 @@ package datastr.set;
  */
 
 
-import datastr.linkedlist.LinkedList;
-import datastr.linkedlist.ListIterator;
+import datastr.tree.RedBlackBST;
 
 import java.lang.reflect.Array;
+import java.util.function.Consumer;
 
 /**
  * SC in the name of the class stands for Separate Chaining
+ *
+ * A bucket is a small array holding its elements one after another, the rest of the array is filled with nulls.
+ * When a bucket gets more than TREEIFY_THRESHOLD elements and all of them are comparable with each other
+ * (they are of the same class implementing Comparable), the bucket is turned into a red black tree,
+ * so even if lots of elements have the same hash code, finding one of them takes O(log n) rather than O(n).
+ * When a tree shrinks to UNTREEIFY_THRESHOLD elements it becomes an array again.
  */
 
 public final class SCSet<T> implements Set<T> {
-    private LinkedList<T>[] lists;
+    private static final int TREEIFY_THRESHOLD = 8;
+    private static final int UNTREEIFY_THRESHOLD = 6;
+    private static final Object[] NO_ELEMENTS = new Object[0];
+
+    private Object[] buckets; // Each bucket is either null, an Object[] or a RedBlackBST
     private int count;
-    private Class clazz; // Need it for toArray() method
+    private Class<?> clazz; // Need it for toArray() method
 
     public SCSet(int initialCapacity) {
         count = 0;
-        lists = (LinkedList<T>[]) new LinkedList[initialCapacity];
+        buckets = new Object[Math.max(initialCapacity, 1)];
     }
 
     public SCSet() { this(16); } // If no initial value is provided, 16 is the default size
@@ -33,14 +43,10 @@ public final class SCSet<T> implements Set<T> {
 
         StringBuilder builder = new StringBuilder("[");
 
-        for (LinkedList<T> list: lists) {
-            ListIterator<T> iterator = null;
-            if (list != null && !list.isEmpty()) {
-                iterator = list.getIterator();
-                for (int i = 0; i < list.size(); i++) {
-                    builder.append(iterator.get()).append(", ");
-                    iterator.next();
-                }
+        for (Object bucket: buckets) {
+            for (Object element: elementsOf(bucket)) {
+                if (element == null) break;
+                builder.append(element).append(", ");
             }
         }
 
@@ -56,65 +62,157 @@ public final class SCSet<T> implements Set<T> {
 
     public boolean contains(T element) { return get(element) != null; }
 
+    /**
+     * @return the elements of the bucket, an array bucket may have nulls at the end
+     */
+    private static Object[] elementsOf(Object bucket) {
+        if (bucket == null) return NO_ELEMENTS;
+        if (bucket instanceof RedBlackBST) return tree(bucket).toArray();
+        return (Object[]) bucket;
+    }
+
+    /**
+     * The only unchecked casts in the class. The buckets hold Objects, but only elements of the set ever get into them.
+     * A tree bucket only ever holds elements of one class implementing Comparable, and isComparableWith() is checked
+     * before an element goes into a tree or is looked up in it, so whatever that class is, the bucket is a tree of it
+     * and the element is one of its keys
+     */
+    @SuppressWarnings("unchecked")
+    private static <E extends Comparable<E>> RedBlackBST<E> tree(Object bucket) { return (RedBlackBST<E>) bucket; }
+
+    @SuppressWarnings("unchecked")
+    private static <E> E cast(Object element) { return (E) element; }
+
+    // We clear the sign bit rather than calling Math.abs() since Math.abs(Integer.MIN_VALUE) is negative
+    private int indexFor(Object element, int length) { return (element.hashCode() & 0x7fffffff) % length; }
+
     private void checkFullness() {
         // Unlike sets using open addressing method this kind of set uses separate chaining
         // its load factor can be bigger than 1 so let it be 1,5
-        boolean shouldExpand = (double) count / lists.length >= 1.5;
+        boolean shouldExpand = (double) count / buckets.length >= 1.5;
         if (shouldExpand) {
             // Create a new expanded array twice as big as the current one
-            LinkedList<T>[] newArray = (LinkedList<T>[]) new LinkedList[lists.length << 1];
-
-            // Check each linked list
-            for (LinkedList<T> list: lists) {
-                // If the list is not empty
-                if (list != null && !list.isEmpty()) {
-                    ListIterator<T> iterator = list.getIterator();
-                    for (int j = 0; j < list.size(); j++) {
-                        T element = iterator.get();
-                        // Recalculate a new hash code with respect to the new array's size
-                        int index = Math.abs(element.hashCode()) % newArray.length;
-
-                        if (newArray[index] == null) newArray[index] = new LinkedList<>();
-
-                        // Put it into a linked list which is located at the newly calculated index
-                        newArray[index].append(element);
-                        iterator.next();
-                    }
+            Object[] oldBuckets = buckets;
+            buckets = new Object[oldBuckets.length << 1];
+
+            // Recalculate a new hash code with respect to the new array's size for each element
+            // and put it into the bucket which is located at the newly calculated index
+            for (Object bucket: oldBuckets) {
+                for (Object element: elementsOf(bucket)) {
+                    if (element == null) break;
+                    add(element);
                 }
             }
+        }
+    }
+
+    /**
+     * Puts an element which is known not to be in the set into its bucket
+     */
+    private void add(Object element) {
+        int index = indexFor(element, buckets.length);
+        Object bucket = buckets[index];
+
+        if (bucket == null) {
+            Object[] array = new Object[2];
+            array[0] = element;
+            buckets[index] = array;
+            return;
+        }
+
+        if (bucket instanceof RedBlackBST) {
+            RedBlackBST<?> tree = tree(bucket);
+
+            if (isComparableWith(tree.min(), element)) {
+                tree(bucket).insert(cast(element));
+                return;
+            }
+
+            // The element can't be put into the tree, so the bucket becomes an array again
+            bucket = toBucketArray(tree);
+        }
+
+        Object[] array = (Object[]) bucket;
+        int size = sizeOf(array);
+
+        // A bucket can be past the threshold if it couldn't be treeified before or has just stopped being a tree
+        if (size >= TREEIFY_THRESHOLD && canTreeify(array, size, element)) {
+            buckets[index] = treeOf(array, size, element);
+            return;
+        }
 
-            lists = newArray;
+        if (size == array.length) {
+            Object[] newArray = new Object[array.length << 1];
+            System.arraycopy(array, 0, newArray, 0, size);
+            array = newArray;
         }
+
+        array[size] = element;
+        buckets[index] = array;
+    }
+
+    /**
+     * RedBlackBST.toArray() returns an array of the elements' class, so we copy the elements into an Object[]
+     * which can take an element of any class later
+     */
+    private static Object[] toBucketArray(RedBlackBST<?> tree) {
+        Object[] elements = tree.toArray();
+        Object[] array = new Object[Math.max(elements.length + 1, TREEIFY_THRESHOLD)];
+        System.arraycopy(elements, 0, array, 0, elements.length);
+        return array;
+    }
+
+    private static int sizeOf(Object[] array) {
+        int size = 0;
+        while (size < array.length && array[size] != null) ++size;
+        return size;
+    }
+
+    private static boolean isComparableWith(Object a, Object b) {
+        return a instanceof Comparable && a.getClass() == b.getClass();
+    }
+
+    private static boolean canTreeify(Object[] array, int size, Object element) {
+        for (int i = 0; i < size; i++) {
+            if (!isComparableWith(array[i], element)) return false;
+        }
+        return true;
+    }
+
+    private static <E extends Comparable<E>> RedBlackBST<E> treeOf(Object[] array, int size, Object element) {
+        RedBlackBST<E> tree = new RedBlackBST<>();
+        for (int i = 0; i < size; i++) tree.insert(cast(array[i]));
+        tree.insert(cast(element));
+        return tree;
     }
 
     public void insert(T element) {
         clazz = element.getClass();
-        checkFullness();
-        // Calculate index
-        int index = Math.abs(element.hashCode()) % lists.length;
-        LinkedList<T> list = lists[index];
 
-        if (list == null) {
-            list = new LinkedList<>();
-            lists[index] = list;
-        }
+        // Insert the element only if it is not already in the set
+        if (get(element) != null) return;
 
-        // Then insert the element only if it is not already in the set
-        if (!list.contains(element)) {
-            list.append(element);
-            ++count;
-        }
+        checkFullness();
+        add(element);
+        ++count;
     }
 
     public T get(T element) {
         if (isEmpty()) return null;
 
-        // Calculate index
-        int index = Math.abs(element.hashCode()) % lists.length;
-        LinkedList<T> list = lists[index];
+        Object bucket = buckets[indexFor(element, buckets.length)];
+        if (bucket == null) return null;
 
-        // If list is not empty
-        if (list != null &&!list.isEmpty()) return list.find(element);
+        if (bucket instanceof RedBlackBST) {
+            // An element of another class can't be in the tree
+            return isComparableWith(tree(bucket).min(), element) ? cast(tree(bucket).get(cast(element))) : null;
+        }
+
+        Object[] array = (Object[]) bucket;
+
+        for (int i = 0; i < array.length && array[i] != null; i++) {
+            if (array[i].equals(element)) return cast(array[i]);
+        }
 
         return null;
     }
@@ -122,43 +220,119 @@ public final class SCSet<T> implements Set<T> {
     public T delete(T element) {
         if (isEmpty()) return null;
 
-        // Calculate index
-        int index = Math.abs(element.hashCode()) % lists.length;
+        int index = indexFor(element, buckets.length);
+        Object bucket = buckets[index];
+        if (bucket == null) return null;
 
-        LinkedList<T> list = lists[index];
+        if (bucket instanceof RedBlackBST) {
+            RedBlackBST<?> tree = tree(bucket);
+            if (!isComparableWith(tree.min(), element)) return null;
 
-        // If the list is not empty
-        if (list != null && !list.isEmpty()) {
-            ListIterator<T> iterator = list.getIterator();
-            for (int i = 0; i < list.size(); i++) {
-                if (iterator.get().equals(element)) {
-                    --count;
-                    return iterator.delete();
-                }
-                iterator.next();
+            T deleted = cast(tree(bucket).delete(cast(element)));
+
+            if (deleted != null) {
+                --count;
+                // A small tree is not worth its nodes, turn it back into an array
+                if (tree.size() <= UNTREEIFY_THRESHOLD) buckets[index] = toBucketArray(tree);
+            }
+
+            return deleted;
+        }
+
+        Object[] array = (Object[]) bucket;
+        int size = sizeOf(array);
+
+        for (int i = 0; i < size; i++) {
+            if (array[i].equals(element)) {
+                T deleted = cast(array[i]);
+
+                // Move the last element into the hole, so the elements stay one after another
+                array[i] = array[size - 1];
+                array[size - 1] = null;
+                if (size == 1) buckets[index] = null;
+
+                --count;
+                return deleted;
             }
         }
 
         return null;
     }
 
-    public T[] toArray() {
-        if (isEmpty()) return null;
+    /**
+     * Calls the action for every element in place, so unlike toArray() nothing is copied.
+     * The action must not modify the set.
+     */
+    public void forEach(Consumer<? super T> action) {
+        for (Object bucket: buckets) {
+            if (bucket == null) continue;
+
+            if (bucket instanceof RedBlackBST) {
+                tree(bucket).forEach(element -> action.accept(cast(element)));
+                continue;
+            }
 
-        T[] array = (T[]) Array.newInstance(clazz, count);
-        // Get each item in the set
-        for (int i = 0, j = 0; i < lists.length; i++) {
+            Object[] array = (Object[]) bucket;
+            for (int i = 0; i < array.length && array[i] != null; i++) action.accept(cast(array[i]));
+        }
+    }
 
-            LinkedList<T> list = lists[i];
+    public SCSet<T> union(Set<T> other) {
+        SCSet<T> result = new SCSet<>(count + other.size());
+        forEach(result::insert);
+        other.forEach(result::insert);
+        return result;
+    }
 
-            // If the list is not empty
-            if (list != null && !list.isEmpty()) {
-                ListIterator<T> iterator = list.getIterator();
+    /**
+     * Every element of the intersection is in both sets, so we walk the smaller one and probe the larger one
+     */
+    public SCSet<T> intersection(Set<T> other) {
+        SCSet<T> result = new SCSet<>(Math.min(count, other.size()));
+
+        if (count <= other.size()) {
+            forEach(element -> { if (other.contains(element)) result.insert(element); });
+        } else {
+            other.forEach(element -> {
+                T found = get(element);
+                if (found != null) result.insert(found);
+            });
+        }
 
-                for (int k = 0; k < list.size(); k++) {
-                    array[j++] = iterator.get();
-                    iterator.next();
-                }
+        return result;
+    }
+
+    public SCSet<T> difference(Set<T> other) {
+        SCSet<T> result = new SCSet<>(count);
+        forEach(element -> { if (!other.contains(element)) result.insert(element); });
+        return result;
+    }
+
+    public boolean isSubset(Set<T> other) {
+        // A larger set can't fit into a smaller one, no need to probe anything
+        if (count > other.size()) return false;
+
+        for (Object bucket: buckets) {
+            for (Object element: elementsOf(bucket)) {
+                if (element == null) break;
+                if (!other.contains(cast(element))) return false;
+            }
+        }
+
+        return true;
+    }
+
+    public T[] toArray() {
+        if (isEmpty()) return null;
+
+        T[] array = cast(Array.newInstance(clazz, count));
+        int j = 0;
+
+        // Get each item in the set
+        for (Object bucket: buckets) {
+            for (Object element: elementsOf(bucket)) {
+                if (element == null) break;
+                array[j++] = cast(element);
             }
         }
 
@@ -1,5 +1,7 @@
 package datastr.set;
 
+import java.util.function.Consumer;
+
 /**
  * Created by Renat Kaitmazov on 12/09/15.
  */
@@ -14,4 +16,12 @@ public interface Set<T> {
     public void insert(T element);
     public T get(T element);
     public T delete(T element);
+
+    /** Bulk Operations **/
+    public void forEach(Consumer<? super T> action);
+    // Neither set is changed, the result is a new set of the same kind as this one
+    public Set<T> union(Set<T> other);
+    public Set<T> intersection(Set<T> other);
+    public Set<T> difference(Set<T> other);
+    public boolean isSubset(Set<T> other); // Whether every element of this set is in the other one
 }
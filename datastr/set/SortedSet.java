@@ -1,6 +1,11 @@
 package datastr.set;
 
 import datastr.tree.RedBlackBST;
+import datastr.tree.SortedTree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Consumer;
 
 /**
  * Created by Renat Kaitmazov on 12/09/15.
@@ -13,7 +18,31 @@ public final class SortedSet<T extends Comparable<T>> implements Set<T> {
     // a hashcode. The only thing we should check is if we already have a particular
     // item in our storage. Everything else will be done for us by that storage
 
-    private RedBlackBST<T> storage = new RedBlackBST<>();
+    private final SortedTree<T> storage;
+
+    public SortedSet() { this(new RedBlackBST<>()); }
+
+    /**
+     * @param storage an empty tree to keep the elements in, for example a BPlusTree.SetDecorator when there are
+     * millions of them. The results of union(), intersection() and difference() use the same kind of tree
+     */
+    public SortedSet(SortedTree<T> storage) { this.storage = storage; }
+
+    /**
+     * Builds the set in O(n) from elements in ascending order instead of inserting them one by one
+     * @throws IllegalArgumentException if the elements are not in ascending order
+     */
+    public static <T extends Comparable<T>> SortedSet<T> fromSorted(T[] sorted) {
+        // A set keeps only one of equal elements, in sorted input they are next to each other
+        T[] distinct = Arrays.copyOf(sorted, sorted.length);
+        int count = 0;
+
+        for (T element: sorted) {
+            if (count == 0 || distinct[count - 1].compareTo(element) != 0) distinct[count++] = element;
+        }
+
+        return new SortedSet<>(RedBlackBST.fromSorted(Arrays.asList(distinct).iterator(), count));
+    }
 
     @Override
     public String toString() { return storage.toString(); }
@@ -23,9 +52,207 @@ public final class SortedSet<T extends Comparable<T>> implements Set<T> {
     public boolean contains(T element) { return storage.contains(element); }
 
 
-    public void insert(T element) { if (!storage.contains(element)) storage.insert(element);}
+    public void insert(T element) { storage.insertIfAbsent(element); }
     public T get(T element) { return storage.get(element); }
     public T delete(T element) { return storage.delete(element); }
 
+    public void forEach(Consumer<? super T> action) { storage.forEach(action); }
+
+    /**
+     * Walks the elements of a set that isn't sorted in ascending order: they are copied, sorted and the ones
+     * equal by compareTo() are dropped, so that the set operations below can merge it like a sorted set
+     */
+    private static final class SortedCopy<T extends Comparable<T>> implements SortedTree.Cursor<T> {
+        private final T[] elements;
+        private final int count;
+        private int index = -1;
+
+        SortedCopy(Set<T> set) {
+            ArrayList<T> copy = new ArrayList<>(set.size());
+            set.forEach(copy::add);
+            copy.sort(null);
+
+            elements = (T[]) new Comparable[copy.size()];
+            int distinct = 0;
+
+            for (T element: copy) {
+                if (distinct == 0 || elements[distinct - 1].compareTo(element) != 0) elements[distinct++] = element;
+            }
+
+            count = distinct;
+        }
+
+        public void reset() { index = -1; }
+        public boolean advance() { return ++index < count; }
+        public T element() { return elements[index]; }
+    }
+
+    /**
+     * Both sets are walked side by side in ascending order like the two halves in merge sort, so every element
+     * is looked at once and nothing is searched for. The result comes out sorted and distinct, so its tree is built
+     * from it in O(n) rather than by inserting the elements one by one in O(n log n).
+     * If the other set isn't sorted, its elements are sorted first.
+     */
+    public SortedSet<T> union(Set<T> other) {
+        SortedTree.Cursor<T> a = storage.getCursor();
+        SortedTree.Cursor<T> b;
+        int otherSize;
+
+        if (other instanceof SortedSet) {
+            b = ((SortedSet<T>) other).storage.getCursor();
+            otherSize = other.size();
+        } else {
+            // The copy's size is exact even if the other set has been changed by another thread since size()
+            SortedCopy<T> copy = new SortedCopy<>(other);
+            b = copy;
+            otherSize = copy.count;
+        }
+
+        T[] merged = (T[]) new Comparable[size() + otherSize];
+        int count = 0;
+        boolean hasA = a.advance();
+        boolean hasB = b.advance();
+
+        while (hasA && hasB) {
+            int comparison = a.element().compareTo(b.element());
+
+            if (comparison < 0) {
+                merged[count++] = a.element();
+                hasA = a.advance();
+            } else if (comparison > 0) {
+                merged[count++] = b.element();
+                hasB = b.advance();
+            } else {
+                merged[count++] = a.element();
+                hasA = a.advance();
+                hasB = b.advance();
+            }
+        }
+
+        // One of the sets has run out, the rest of the other one goes as it is
+        for (; hasA; hasA = a.advance()) merged[count++] = a.element();
+        for (; hasB; hasB = b.advance()) merged[count++] = b.element();
+
+        return new SortedSet<>(storage.withSorted(merged, count));
+    }
+
+    /**
+     * If the other set isn't sorted, it's probed for every element of this one, which are walked
+     * in ascending order anyway, so the result is sorted either way
+     */
+    public SortedSet<T> intersection(Set<T> other) {
+        SortedTree.Cursor<T> a = storage.getCursor();
+        int count = 0;
+
+        if (!(other instanceof SortedSet)) {
+            T[] merged = (T[]) new Comparable[size()];
+
+            while (a.advance()) {
+                if (other.contains(a.element())) merged[count++] = a.element();
+            }
+
+            return new SortedSet<>(storage.withSorted(merged, count));
+        }
+
+        T[] merged = (T[]) new Comparable[Math.min(size(), other.size())];
+
+        SortedTree.Cursor<T> b = ((SortedSet<T>) other).storage.getCursor();
+        boolean hasA = a.advance();
+        boolean hasB = b.advance();
+
+        while (hasA && hasB) {
+            int comparison = a.element().compareTo(b.element());
+
+            if (comparison < 0) hasA = a.advance();
+            else if (comparison > 0) hasB = b.advance();
+            else {
+                merged[count++] = a.element();
+                hasA = a.advance();
+                hasB = b.advance();
+            }
+        }
+
+        return new SortedSet<>(storage.withSorted(merged, count));
+    }
+
+    public SortedSet<T> difference(Set<T> other) {
+        T[] merged = (T[]) new Comparable[size()];
+        int count = 0;
+        SortedTree.Cursor<T> a = storage.getCursor();
+
+        if (!(other instanceof SortedSet)) {
+            while (a.advance()) {
+                if (!other.contains(a.element())) merged[count++] = a.element();
+            }
+
+            return new SortedSet<>(storage.withSorted(merged, count));
+        }
+
+        SortedTree.Cursor<T> b = ((SortedSet<T>) other).storage.getCursor();
+        boolean hasA = a.advance();
+        boolean hasB = b.advance();
+
+        while (hasA && hasB) {
+            int comparison = a.element().compareTo(b.element());
+
+            if (comparison < 0) {
+                merged[count++] = a.element();
+                hasA = a.advance();
+            } else if (comparison > 0) hasB = b.advance();
+            else {
+                hasA = a.advance();
+                hasB = b.advance();
+            }
+        }
+
+        for (; hasA; hasA = a.advance()) merged[count++] = a.element();
+
+        return new SortedSet<>(storage.withSorted(merged, count));
+    }
+
+    public boolean isSubset(Set<T> other) {
+        // A larger set can't fit into a smaller one
+        if (size() > other.size()) return false;
+
+        SortedTree.Cursor<T> a = storage.getCursor();
+
+        if (!(other instanceof SortedSet)) {
+            while (a.advance()) {
+                if (!other.contains(a.element())) return false;
+            }
+            return true;
+        }
+
+        SortedTree.Cursor<T> b = ((SortedSet<T>) other).storage.getCursor();
+
+        while (a.advance()) {
+            // Skip the other set's elements that are smaller than the current one, the current one must come next
+            int comparison;
+            do {
+                if (!b.advance()) return false;
+                comparison = b.element().compareTo(a.element());
+            } while (comparison < 0);
+
+            if (comparison > 0) return false;
+        }
+
+        return true;
+    }
+
     public T[] toArray() { return storage.toArray(); }
+
+    /** Order Statistics **/
+    // The trees keep the size of every subtree, so none of these copies the elements, they all take O(log n)
+
+    public int rank(T element) { return storage.rank(element); } // The number of elements less than the specified one
+    public T select(int k) { return storage.select(k); } // The k-th smallest element counting from 0
+    public int countInRange(T low, T high) { return storage.countInRange(low, high); } // Both bounds are inclusive
+    public T floor(T element) { return storage.floor(element); }
+    public T ceiling(T element) { return storage.ceiling(element); }
+
+    /**
+     * @return a cursor over the elements from one to another inclusive in ascending order. It finds the first one
+     * in O(log n) and then moves on lazily. A null bound means there is no bound on that side
+     */
+    public SortedTree.Cursor<T> range(T from, T to) { return storage.getCursor(from, to); }
 }
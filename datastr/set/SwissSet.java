@@ -0,0 +1,281 @@
+package datastr.set;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+import datastr.hashmap.Hashing;
+
+import java.lang.reflect.Array;
+import java.util.function.Consumer;
+
+/**
+ * An open addressing set laid out like Google's SwissTable.
+ *
+ * The cells are split into groups of 8. Besides the elements, every cell has a control byte that tells whether the cell
+ * is empty, deleted or full, and for a full cell it holds 7 bits of the element's hash code (a fingerprint).
+ * The 8 control bytes of a group are packed into one long, so a lookup compares the fingerprint against the whole group
+ * with a few arithmetic operations (SWAR, SIMD within a register) and calls equals() only on the cells whose
+ * fingerprint matches. A probe goes from group to group and stops at the first group that has an empty cell.
+ */
+
+public final class SwissSet<T> implements Set<T> {
+    // Control bytes. A full cell holds a fingerprint from 0 to 127, so its high bit is clear
+    private static final long EMPTY = 0x80;
+    private static final long DELETED = 0xfe;
+
+    private static final int GROUP_SIZE = 8;
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private long[] control; // One long per group, the control byte of cell i of a group is byte i of the long
+    private Object[] storage;
+    private int groupMask; // The number of groups is always a power of two
+    private int count;
+    private int deletedCount; // Deleted cells don't stop a probe, so they count towards fullness
+    private Class clazz; // Need it for toArray() method
+
+    public SwissSet() {
+        this(16);
+    }
+
+    public SwissSet(int initialCapacity) {
+        int groups = 1;
+        while (groups * GROUP_SIZE * 7 / 8 <= initialCapacity) groups <<= 1;
+        allocate(groups);
+    }
+
+    private void allocate(int groups) {
+        control = new long[groups];
+        for (int i = 0; i < groups; i++) control[i] = EMPTY * LOW_BITS;
+
+        storage = new Object[groups * GROUP_SIZE];
+        groupMask = groups - 1;
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty())
+            return "{}";
+        else {
+            StringBuilder builder = new StringBuilder("{");
+
+            for (int i = 0; i < storage.length; i++) {
+                if (isFull(i))
+                    builder.append(storage[i].toString()).append(", ");
+            }
+
+            int start   = builder.length() - 2;
+            int end     = builder.length();
+            builder.replace(start, end, "}");
+
+            return builder.toString();
+        }
+    }
+
+    public boolean isEmpty() { return count == 0; }
+    public int size() { return count; }
+    public boolean contains(T element) { return get(element) != null; }
+
+    /**
+     * The low 7 bits become the fingerprint and the rest choose the first group,
+     * so every bit of the hash code has to affect both of them
+     */
+    private static int hash(Object element) { return Hashing.mix(element.hashCode()); }
+
+    private long controlAt(int cell) { return (control[cell >>> 3] >>> ((cell & 7) << 3)) & 0xff; }
+
+    private void setControl(int cell, long value) {
+        int shift = (cell & 7) << 3;
+        control[cell >>> 3] = (control[cell >>> 3] & ~(0xffL << shift)) | (value << shift);
+    }
+
+    private boolean isFull(int cell) { return controlAt(cell) < 0x80; }
+
+    /**
+     * @return a word with the high bit set in every byte equal to the fingerprint. A byte right after a real match
+     * may also be reported, that's fine since every match is checked with equals() anyway
+     */
+    private static long match(long group, int fingerprint) {
+        long x = group ^ (LOW_BITS * fingerprint);
+        return (x - LOW_BITS) & ~x & HIGH_BITS;
+    }
+
+    // EMPTY is the only control byte with the high bit set and bit 1 clear
+    private static long matchEmpty(long group) { return group & ~(group << 6) & HIGH_BITS; }
+
+    // EMPTY and DELETED are the only control bytes with the high bit set
+    private static long matchEmptyOrDeleted(long group) { return group & HIGH_BITS; }
+
+    // The index of the lowest byte whose high bit is set
+    private static int lowestByte(long matches) { return Long.numberOfTrailingZeros(matches) >>> 3; }
+
+    /**
+     * @return the cell holding the element or -1 if there is no such element
+     */
+    private int find(Object element, int hash) {
+        int fingerprint = hash & 0x7f;
+        int group = (hash >>> 7) & groupMask;
+
+        // Triangular probing: the distances between the groups we visit are 1, 2, 3..., with a power of two
+        // number of groups this visits every group
+        for (int distance = 1; ; distance++) {
+            long word = control[group];
+
+            for (long matches = match(word, fingerprint); matches != 0; matches &= matches - 1) {
+                int cell = (group << 3) + lowestByte(matches);
+                if (element.equals(storage[cell])) return cell;
+            }
+
+            if (matchEmpty(word) != 0) return -1;
+
+            group = (group + distance) & groupMask;
+        }
+    }
+
+    /**
+     * @return the first empty or deleted cell on the element's probe sequence
+     */
+    private int findFree(int hash) {
+        int group = (hash >>> 7) & groupMask;
+
+        for (int distance = 1; ; distance++) {
+            long free = matchEmptyOrDeleted(control[group]);
+            if (free != 0) return (group << 3) + lowestByte(free);
+
+            group = (group + distance) & groupMask;
+        }
+    }
+
+    /**
+     * When 7/8 of the cells are full or deleted we create new arrays, twice as big unless most of those cells are
+     * deleted ones, and put every element into them again
+     */
+    private void checkFullness() {
+        if ((count + deletedCount + 1) * 8L > storage.length * 7L) {
+            long[] oldControl = control;
+            Object[] oldStorage = storage;
+
+            int groups = control.length;
+            if (count >= storage.length / 2) groups <<= 1;
+
+            allocate(groups);
+            deletedCount = 0;
+
+            for (int i = 0; i < oldStorage.length; i++) {
+                if (((oldControl[i >>> 3] >>> ((i & 7) << 3)) & 0xff) >= 0x80) continue;
+
+                int hash = hash(oldStorage[i]);
+                int cell = findFree(hash);
+                setControl(cell, hash & 0x7f);
+                storage[cell] = oldStorage[i];
+            }
+        }
+    }
+
+    public void insert(T element) {
+        clazz = element.getClass();
+
+        int hash = hash(element);
+        if (find(element, hash) != -1) return;
+
+        checkFullness();
+
+        int cell = findFree(hash);
+        if (controlAt(cell) == DELETED) --deletedCount;
+
+        setControl(cell, hash & 0x7f);
+        storage[cell] = element;
+        ++count;
+    }
+
+    public T delete(T element) {
+        if (isEmpty()) return null;
+
+        int cell = find(element, hash(element));
+        if (cell == -1) return null;
+
+        // The cell can't become empty, since probes for other elements may have gone past this group
+        T data = (T) storage[cell];
+        storage[cell] = null;
+        setControl(cell, DELETED);
+        --count;
+        ++deletedCount;
+
+        return data;
+    }
+
+    public T get(T element) {
+        if (isEmpty()) return null;
+
+        int cell = find(element, hash(element));
+        return cell != -1 ? (T) storage[cell] : null;
+    }
+
+    /**
+     * Calls the action for every element in place, so unlike toArray() nothing is copied.
+     * The action must not modify the set.
+     */
+    public void forEach(Consumer<? super T> action) {
+        for (int i = 0; i < storage.length; i++) {
+            if (isFull(i))
+                action.accept((T) storage[i]);
+        }
+    }
+
+    public SwissSet<T> union(Set<T> other) {
+        SwissSet<T> result = new SwissSet<>(count + other.size());
+        forEach(result::insert);
+        other.forEach(result::insert);
+        return result;
+    }
+
+    /**
+     * Every element of the intersection is in both sets, so we walk the smaller one and probe the larger one
+     */
+    public SwissSet<T> intersection(Set<T> other) {
+        SwissSet<T> result = new SwissSet<>(Math.min(count, other.size()));
+
+        if (count <= other.size()) {
+            forEach(element -> { if (other.contains(element)) result.insert(element); });
+        } else {
+            other.forEach(element -> {
+                T found = get(element);
+                if (found != null) result.insert(found);
+            });
+        }
+
+        return result;
+    }
+
+    public SwissSet<T> difference(Set<T> other) {
+        SwissSet<T> result = new SwissSet<>(count);
+        forEach(element -> { if (!other.contains(element)) result.insert(element); });
+        return result;
+    }
+
+    public boolean isSubset(Set<T> other) {
+        // A larger set can't fit into a smaller one, no need to probe anything
+        if (count > other.size()) return false;
+
+        for (int i = 0; i < storage.length; i++) {
+            if (isFull(i) && !other.contains((T) storage[i]))
+                return false;
+        }
+
+        return true;
+    }
+
+    public T[] toArray() {
+        if (isEmpty()) return null;
+
+        T[] array = (T[]) Array.newInstance(clazz, count);
+
+        for (int i = 0, j = 0; i < storage.length; i++) {
+            if (isFull(i))
+                array[j++] = (T) storage[i];
+        }
+
+        return array;
+    }
+}
@@ -0,0 +1,80 @@
+package datastr.set;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+import java.util.Random;
+
+/**
+ * Measures membership checks in SwissSet and OASet holding millions of strings.
+ *
+ * The queries are built before the clock starts and their hash codes are computed once, String caches them,
+ * so the time is spent in the probe and in equals() rather than in hashing. Every query is a copy of the string
+ * in the set, not the same object, so equals() compares the characters like it would with real input.
+ * Half of the queries are present and half are missing, and they are shuffled so that consecutive lookups
+ * touch unrelated parts of the table. Small sets go through the queries several times per round, so that every
+ * round does at least a few million lookups and the JIT has long finished by the later rounds.
+ *   java datastr.set.SwissSetBenchmark [elements] [rounds]
+ */
+
+public final class SwissSetBenchmark {
+    private static final int MIN_LOOKUPS = 4_000_000; // Per round
+
+    private interface Lookup { boolean contains(String element); }
+
+    public static void main(String[] args) {
+        int elements = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Random random = new Random(42);
+
+        String[] present = new String[elements];
+        for (int i = 0; i < elements; i++) present[i] = "element-" + Long.toHexString(random.nextLong());
+
+        String[] queries = new String[elements];
+        for (int i = 0; i < elements; i++) {
+            // Odd queries get a suffix no element has, so they are missing
+            queries[i] = (i & 1) == 0 ? new String(present[i].toCharArray()) : present[i] + "#";
+            queries[i].hashCode();
+        }
+
+        for (int i = elements - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            String query = queries[i];
+            queries[i] = queries[j];
+            queries[j] = query;
+        }
+
+        SwissSet<String> swiss = new SwissSet<>();
+        OASet<String> plain = new OASet<>();
+        for (String element: present) {
+            swiss.insert(element);
+            plain.insert(element);
+        }
+
+        int passes = Math.max(1, MIN_LOOKUPS / elements);
+        System.out.printf("%,d strings, %,d lookups per round, half of them missing%n", elements, (long) passes * elements);
+
+        for (int round = 1; round <= rounds; round++) {
+            System.out.printf("round %d: SwissSet %6.1f ns, OASet %6.1f ns per lookup%n", round,
+                    time(swiss::contains, queries, passes), time(plain::contains, queries, passes));
+        }
+    }
+
+    /**
+     * @return nanoseconds per lookup. The number of hits is checked, so the lookups can't be optimized away
+     */
+    private static double time(Lookup set, String[] queries, int passes) {
+        long began = System.nanoTime();
+
+        long hits = 0;
+        for (int pass = 0; pass < passes; pass++)
+            for (String query: queries) if (set.contains(query)) ++hits;
+
+        long elapsed = System.nanoTime() - began;
+        long expected = (long) passes * ((queries.length + 1) / 2);
+        if (hits != expected) throw new AssertionError("Expected " + expected + " hits, got " + hits);
+
+        return (double) elapsed / ((long) passes * queries.length);
+    }
+}
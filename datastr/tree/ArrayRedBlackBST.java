@@ -0,0 +1,684 @@
+package datastr.tree;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * A red black tree with the same operations as RedBlackBST, but without a Node object per element.
+ *
+ * Every node is a slot, an index into parallel arrays holding its element, its left child, right child and parent
+ * (as slot indices), the size of its subtree and its color. A walk down the tree follows ints stored next to each other
+ * instead of references to objects scattered over the heap. Slot 0 is a sentinel (NIL) standing for every missing
+ * child, it is always black and its size is 0, so the balancing code needs no null checks. Slots of deleted nodes
+ * are kept in a free list and reused by later inserts.
+ *
+ * Memory footprint per element (64-bit JVM with compressed references):
+ *   RedBlackBST: a Node with a header, 4 references, an int and a boolean, 40 bytes with padding.
+ *   ArrayRedBlackBST: 4 bytes for the element, 4 ints and a boolean, 21 bytes, and up to twice that right after
+ *   the arrays have grown.
+ */
+
+public final class ArrayRedBlackBST<T extends Comparable<T>> implements SortedTree<T> {
+    private static final int NIL = 0;
+
+    private Object[] elements;
+    private int[] left;
+    private int[] right; // Also links the free slots together
+    private int[] parent;
+    private int[] size; // The number of nodes in the subtree rooted at the slot, used by order statistics
+    private boolean[] red;
+
+    private int root = NIL;
+    private int count;
+    private int used = 1; // Slots from this one on have never been used, slot 0 is the sentinel
+    private int free = NIL; // The first slot of the free list
+    private Class clazz; // Need it for toArray() method
+
+    public ArrayRedBlackBST() { this(16); }
+
+    public ArrayRedBlackBST(int initialCapacity) {
+        int length = Math.max(initialCapacity, 1) + 1;
+
+        elements = new Object[length];
+        left = new int[length];
+        right = new int[length];
+        parent = new int[length];
+        size = new int[length];
+        red = new boolean[length];
+    }
+
+    public boolean isEmpty() { return root == NIL; }
+    public int size() { return count; }
+    public boolean contains(T element) { return find(element) != NIL; }
+
+    /**
+     * Walks the whole tree by the parent indices like RedBlackBST.depth(), so no stack is needed
+     */
+    public int depth() {
+        int depth = 0;
+        int level = 1;
+        int previous = NIL;
+        int slot = root;
+
+        while (slot != NIL) {
+            int next;
+
+            if (previous == parent[slot]) {
+                if (level > depth) depth = level;
+
+                if (left[slot] != NIL) next = left[slot];
+                else if (right[slot] != NIL) next = right[slot];
+                else next = parent[slot];
+            } else if (previous == left[slot] && right[slot] != NIL) {
+                next = right[slot];
+            } else {
+                next = parent[slot];
+            }
+
+            level += next == parent[slot] ? -1 : 1;
+            previous = slot;
+            slot = next;
+        }
+
+        return depth;
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) return "[]";
+
+        StringBuilder builder = new StringBuilder("[");
+
+        for (int slot = first(root); slot != NIL; slot = successor(slot)) builder.append(elements[slot]).append(", ");
+
+        int start   = builder.length() - 2;
+        int end     = builder.length();
+        builder.replace(start, end, "]");
+
+        return builder.toString();
+    }
+
+    private T elementAt(int slot) { return (T) elements[slot]; }
+
+    /*********************      SLOTS       **************************/
+    /*****************************************************************/
+
+    private int allocate(T element) {
+        int slot;
+
+        if (free != NIL) {
+            slot = free;
+            free = right[slot];
+        } else {
+            if (used == elements.length) grow();
+            slot = used++;
+        }
+
+        elements[slot] = element;
+        left[slot] = NIL;
+        right[slot] = NIL;
+        parent[slot] = NIL;
+        size[slot] = 1;
+        red[slot] = true;
+        return slot;
+    }
+
+    private void release(int slot) {
+        elements[slot] = null; // Let the element be garbage collected
+        right[slot] = free;
+        free = slot;
+    }
+
+    private void grow() {
+        int length = elements.length << 1;
+
+        Object[] newElements = new Object[length];
+        System.arraycopy(elements, 0, newElements, 0, elements.length);
+        elements = newElements;
+
+        left = copyOf(left, length);
+        right = copyOf(right, length);
+        parent = copyOf(parent, length);
+        size = copyOf(size, length);
+
+        boolean[] newRed = new boolean[length];
+        System.arraycopy(red, 0, newRed, 0, red.length);
+        red = newRed;
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    // The leftmost slot of the subtree
+    private int first(int slot) {
+        if (slot == NIL) return NIL;
+        while (left[slot] != NIL) slot = left[slot];
+        return slot;
+    }
+
+    // The slot with the next element in ascending order
+    private int successor(int slot) {
+        if (right[slot] != NIL) return first(right[slot]);
+
+        // Otherwise it is the first ancestor we reach from its left subtree
+        while (parent[slot] != NIL && slot == right[parent[slot]]) slot = parent[slot];
+        return parent[slot];
+    }
+
+    /********************   BALANCING   ***************************/
+    /**************************************************************/
+
+    private void rotateLeft(int slot) {
+        int child = right[slot];
+
+        right[slot] = left[child];
+        if (left[child] != NIL) parent[left[child]] = slot;
+
+        parent[child] = parent[slot];
+        if (parent[slot] == NIL) root = child;
+        else if (slot == left[parent[slot]]) left[parent[slot]] = child;
+        else right[parent[slot]] = child;
+
+        left[child] = slot;
+        parent[slot] = child;
+
+        // The child now roots the whole subtree
+        size[child] = size[slot];
+        size[slot] = size[left[slot]] + size[right[slot]] + 1;
+    }
+
+    private void rotateRight(int slot) {
+        int child = left[slot];
+
+        left[slot] = right[child];
+        if (right[child] != NIL) parent[right[child]] = slot;
+
+        parent[child] = parent[slot];
+        if (parent[slot] == NIL) root = child;
+        else if (slot == right[parent[slot]]) right[parent[slot]] = child;
+        else left[parent[slot]] = child;
+
+        right[child] = slot;
+        parent[slot] = child;
+
+        size[child] = size[slot];
+        size[slot] = size[left[slot]] + size[right[slot]] + 1;
+    }
+
+    /**
+     * Two red nodes in a row are fixed by recoloring while the uncle is red, moving the problem up the tree,
+     * and by one or two rotations once the uncle is black
+     */
+    private void fixUp(int slot) {
+        while (red[parent[slot]]) {
+            int p = parent[slot];
+            int grandParent = parent[p];
+
+            if (p == left[grandParent]) {
+                int uncle = right[grandParent];
+
+                if (red[uncle]) {
+                    red[p] = false;
+                    red[uncle] = false;
+                    red[grandParent] = true;
+                    slot = grandParent;
+                } else {
+                    // An inside child is rotated to the outside first
+                    if (slot == right[p]) {
+                        slot = p;
+                        rotateLeft(slot);
+                        p = parent[slot];
+                    }
+
+                    red[p] = false;
+                    red[grandParent] = true;
+                    rotateRight(grandParent);
+                }
+            } else {
+                int uncle = left[grandParent];
+
+                if (red[uncle]) {
+                    red[p] = false;
+                    red[uncle] = false;
+                    red[grandParent] = true;
+                    slot = grandParent;
+                } else {
+                    if (slot == left[p]) {
+                        slot = p;
+                        rotateRight(slot);
+                        p = parent[slot];
+                    }
+
+                    red[p] = false;
+                    red[grandParent] = true;
+                    rotateLeft(grandParent);
+                }
+            }
+        }
+
+        red[root] = false;
+    }
+
+    /**
+     * The slot has taken the place of a removed black node, so its path is one black node short ("double black").
+     * The extra black is pushed up the tree until it is absorbed by a red node, by a rotation, or by the root.
+     * The slot may be NIL, that's why the sentinel's parent is set when a node is removed.
+     */
+    private void fixDoubleBlack(int slot) {
+        while (slot != root && !red[slot]) {
+            int p = parent[slot];
+
+            if (slot == left[p]) {
+                int sibling = right[p];
+
+                if (red[sibling]) {
+                    red[sibling] = false;
+                    red[p] = true;
+                    rotateLeft(p);
+                    sibling = right[p];
+                }
+
+                if (!red[left[sibling]] && !red[right[sibling]]) {
+                    red[sibling] = true;
+                    slot = p;
+                } else {
+                    if (!red[right[sibling]]) {
+                        red[left[sibling]] = false;
+                        red[sibling] = true;
+                        rotateRight(sibling);
+                        sibling = right[p];
+                    }
+
+                    red[sibling] = red[p];
+                    red[p] = false;
+                    red[right[sibling]] = false;
+                    rotateLeft(p);
+                    slot = root;
+                }
+            } else {
+                int sibling = left[p];
+
+                if (red[sibling]) {
+                    red[sibling] = false;
+                    red[p] = true;
+                    rotateRight(p);
+                    sibling = left[p];
+                }
+
+                if (!red[left[sibling]] && !red[right[sibling]]) {
+                    red[sibling] = true;
+                    slot = p;
+                } else {
+                    if (!red[left[sibling]]) {
+                        red[right[sibling]] = false;
+                        red[sibling] = true;
+                        rotateLeft(sibling);
+                        sibling = left[p];
+                    }
+
+                    red[sibling] = red[p];
+                    red[p] = false;
+                    red[left[sibling]] = false;
+                    rotateRight(p);
+                    slot = root;
+                }
+            }
+        }
+
+        red[slot] = false;
+    }
+
+    /********************   INSERTION   ***************************/
+    /**************************************************************/
+
+    public void insert(T element) { insert(element, true); }
+
+    /**
+     * Inserts the element unless an equal one (compareTo() returns 0) is already in the tree, in a single walk
+     * @return the element that is in the tree afterwards: the one that was already there or the specified one
+     */
+    public T insertIfAbsent(T element) {
+        int existing = insert(element, false);
+        return existing != NIL ? elementAt(existing) : element;
+    }
+
+    /**
+     * @return the slot with an equal element if the element wasn't inserted, otherwise NIL
+     */
+    private int insert(T element, boolean allowDuplicates) {
+        int p = NIL;
+        int current = root;
+        boolean goLeft = false;
+
+        while (current != NIL) {
+            int comparison = element.compareTo(elementAt(current));
+            if (comparison == 0 && !allowDuplicates) return current;
+
+            p = current;
+            goLeft = comparison < 0;
+            current = goLeft ? left[current] : right[current];
+        }
+
+        clazz = element.getClass();
+        ++count;
+
+        int slot = allocate(element);
+        parent[slot] = p;
+
+        if (p == NIL) root = slot;
+        else if (goLeft) left[p] = slot;
+        else right[p] = slot;
+
+        for (int node = p; node != NIL; node = parent[node]) ++size[node];
+
+        fixUp(slot);
+        return NIL;
+    }
+
+    /*********************  GETTING ELEMENTS    **********************/
+    /*****************************************************************/
+
+    private int find(T element) {
+        int current = root;
+
+        while (current != NIL) {
+            int comparison = element.compareTo(elementAt(current));
+            if (comparison == 0) return current;
+            current = comparison < 0 ? left[current] : right[current];
+        }
+
+        return NIL;
+    }
+
+    public T get(T element) {
+        int slot = find(element);
+        return slot != NIL ? elementAt(slot) : null;
+    }
+
+    public T min() { return isEmpty() ? null : elementAt(first(root)); }
+
+    public T max() {
+        if (isEmpty()) return null;
+
+        int current = root;
+        while (right[current] != NIL) current = right[current];
+        return elementAt(current);
+    }
+
+    /*********************  ORDER STATISTICS  **********************/
+    /*****************************************************************/
+
+    /**
+     * @return the number of elements less than the specified one, it doesn't have to be in the tree
+     */
+    public int rank(T element) { return countLess(element, false); }
+
+    private int countLess(T element, boolean inclusive) {
+        int less = 0;
+        int current = root;
+
+        while (current != NIL) {
+            int comparison = element.compareTo(elementAt(current));
+
+            if (comparison < 0 || (comparison == 0 && !inclusive)) current = left[current];
+            else {
+                less += size[left[current]] + 1;
+                current = right[current];
+            }
+        }
+
+        return less;
+    }
+
+    /**
+     * @return the k-th smallest element counting from 0 or null if there is no such element
+     */
+    public T select(int k) {
+        if (k < 0 || k >= count) return null;
+
+        int current = root;
+
+        while (true) {
+            int leftSize = size[left[current]];
+
+            if (k < leftSize) current = left[current];
+            else if (k == leftSize) return elementAt(current);
+            else {
+                k -= leftSize + 1;
+                current = right[current];
+            }
+        }
+    }
+
+    /**
+     * @return the number of elements from low to high inclusive
+     */
+    public int countInRange(T low, T high) {
+        if (low.compareTo(high) > 0) return 0;
+        return countLess(high, true) - countLess(low, false);
+    }
+
+    private int floorSlot(T element) {
+        int floor = NIL;
+        int current = root;
+
+        while (current != NIL) {
+            if (element.compareTo(elementAt(current)) < 0) current = left[current];
+            else {
+                floor = current;
+                current = right[current];
+            }
+        }
+
+        return floor;
+    }
+
+    private int ceilingSlot(T element) {
+        int ceiling = NIL;
+        int current = root;
+
+        while (current != NIL) {
+            if (element.compareTo(elementAt(current)) > 0) current = right[current];
+            else {
+                ceiling = current;
+                current = left[current];
+            }
+        }
+
+        return ceiling;
+    }
+
+    public T floor(T element) {
+        int slot = floorSlot(element);
+        return slot != NIL ? elementAt(slot) : null;
+    }
+
+    public T ceiling(T element) {
+        int slot = ceilingSlot(element);
+        return slot != NIL ? elementAt(slot) : null;
+    }
+
+    /**********************     DELETION    **************************/
+    /*****************************************************************/
+
+    // Puts the replacement (possibly NIL) in place of the slot
+    private void transplant(int slot, int replacement) {
+        if (parent[slot] == NIL) root = replacement;
+        else if (slot == left[parent[slot]]) left[parent[slot]] = replacement;
+        else right[parent[slot]] = replacement;
+
+        parent[replacement] = parent[slot];
+    }
+
+    public T delete(T element) {
+        int slot = find(element);
+        if (slot == NIL) return null;
+
+        T data = elementAt(slot);
+
+        // The node that actually leaves its position: the slot itself if it has at most one child,
+        // otherwise its inorder successor, which then takes the slot's place
+        int removed = (left[slot] == NIL || right[slot] == NIL) ? slot : first(right[slot]);
+        boolean removedWasRed = red[removed];
+
+        // Every subtree above the removed position loses a node
+        for (int node = parent[removed]; node != NIL; node = parent[node]) --size[node];
+
+        int child; // The slot (possibly NIL) that takes the removed node's position
+
+        if (left[slot] == NIL) {
+            child = right[slot];
+            transplant(slot, child);
+        } else if (right[slot] == NIL) {
+            child = left[slot];
+            transplant(slot, child);
+        } else {
+            child = right[removed];
+
+            if (parent[removed] == slot) parent[child] = removed;
+            else {
+                transplant(removed, child);
+                right[removed] = right[slot];
+                parent[right[removed]] = removed;
+            }
+
+            transplant(slot, removed);
+            left[removed] = left[slot];
+            parent[left[removed]] = removed;
+            red[removed] = red[slot];
+            size[removed] = size[slot];
+        }
+
+        if (!removedWasRed) fixDoubleBlack(child);
+
+        // The sentinel's parent may have been set above, it is never read outside of the deletion
+        parent[NIL] = NIL;
+        release(slot);
+        --count;
+
+        return data;
+    }
+
+    /**********************     TRAVERSAL    *************************/
+    /*****************************************************************/
+
+    /**
+     * Calls the action for every element in ascending order. The action must not modify the tree.
+     */
+    public void forEach(Consumer<? super T> action) {
+        for (int slot = first(root); slot != NIL; slot = successor(slot)) action.accept(elementAt(slot));
+    }
+
+    /**
+     * Walks the tree in ascending order one element at a time, optionally only the elements from one to another
+     * inclusive. The tree must not be modified while the cursor is in use.
+     *
+     * Usage:
+     * ArrayRedBlackBST<T>.Cursor cursor = tree.getCursor();
+     * while (cursor.advance()) process(cursor.element());
+     */
+    public final class Cursor implements SortedTree.Cursor<T> {
+        private final T from; // The bounds of the range, inclusive. Null means the range is not bounded on that side
+        private final T to;
+        private int current;
+        private int next;
+
+        private Cursor(T from, T to) {
+            this.from = from;
+            this.to = to;
+            reset();
+        }
+
+        /**
+         * Puts the cursor before the smallest element of the range
+         */
+        public void reset() {
+            current = NIL;
+            next = from != null ? ceilingSlot(from) : first(root);
+        }
+
+        /**
+         * Moves the cursor to the next element
+         * @return false if there are no more elements in the range
+         */
+        public boolean advance() {
+            current = next;
+
+            if (current != NIL && to != null && elementAt(current).compareTo(to) > 0) current = NIL;
+            if (current == NIL) {
+                next = NIL;
+                return false;
+            }
+
+            next = successor(current);
+            return true;
+        }
+
+        public T element() {
+            if (current == NIL) throw new IllegalStateException("The cursor is not at an element");
+            return elementAt(current);
+        }
+    }
+
+    public Cursor getCursor() { return new Cursor(null, null); }
+
+    /**
+     * @return a cursor over the elements from one to another inclusive, a null bound means there is no bound
+     */
+    public Cursor getCursor(T from, T to) { return new Cursor(from, to); }
+
+    public ArrayRedBlackBST<T> empty() { return new ArrayRedBlackBST<>(); }
+
+    /**
+     * Builds the tree like RedBlackBST.fromSorted(): the middle element is the root, only the last level is red.
+     * The slots are taken in ascending order of the elements, so an in-order walk reads the arrays front to back
+     */
+    public ArrayRedBlackBST<T> withSorted(T[] sorted, int count) {
+        ArrayRedBlackBST<T> tree = new ArrayRedBlackBST<>(count);
+        if (count <= 0) return tree;
+
+        int redLevel = 31 - Integer.numberOfLeadingZeros(count + 1);
+
+        tree.root = tree.build(new SortedInput<>(Arrays.asList(sorted).iterator()), 0, count - 1, 0, redLevel);
+        tree.count = count;
+        tree.clazz = sorted[0].getClass();
+        return tree;
+    }
+
+    // The elements are read in order, so the left subtree is built before its parent and the right one after it
+    private int build(SortedInput<T> input, int low, int high, int level, int redLevel) {
+        if (low > high) return NIL;
+
+        int middle = (low + high) >>> 1;
+        int leftSlot = build(input, low, middle - 1, level + 1, redLevel);
+        int slot = allocate(input.next());
+
+        red[slot] = level == redLevel;
+        size[slot] = high - low + 1;
+        left[slot] = leftSlot;
+        if (leftSlot != NIL) parent[leftSlot] = slot;
+
+        int rightSlot = build(input, middle + 1, high, level + 1, redLevel);
+        right[slot] = rightSlot;
+        if (rightSlot != NIL) parent[rightSlot] = slot;
+
+        return slot;
+    }
+
+    public T[] toArray() {
+        T[] array = (T[]) Array.newInstance(clazz, count);
+
+        int i = 0;
+        for (int slot = first(root); slot != NIL; slot = successor(slot)) array[i++] = elementAt(slot);
+
+        return array;
+    }
+}
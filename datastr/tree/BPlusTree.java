@@ -0,0 +1,763 @@
+package datastr.tree;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * A B+tree keeps many keys in every node, stored in arrays, instead of one key per node like a binary tree.
+ * With an order of 64 (up to 64 keys in a leaf and 64 children of an inner node) 10 million keys are at most
+ * 5 levels deep, so a lookup follows about 5 references and binary searches arrays that sit in a few cache lines,
+ * instead of following about 24 references to nodes scattered over the heap.
+ *
+ * Keys and values are only in the leaves, an inner node holds separators: every key in children[i] is less than
+ * keys[i] and every key in children[i + 1] is greater than or equal to it. The leaves are linked to each other,
+ * so an ordered scan goes from one array to the next without climbing back up the tree.
+ * Inner nodes also keep the number of keys under each child, so the order statistics take O(log n) too.
+ *
+ * Every node but the root is at least half full. An overflowing node is split in two, and a node that falls
+ * below half borrows a key from a sibling or is merged with it.
+ */
+
+public final class BPlusTree<K extends Comparable<K>, V> implements SortedTreeMap<K, V> {
+    private static final int DEFAULT_ORDER = 64;
+
+    private static class Node {
+        final Object[] keys;
+        int count; // The number of keys in use
+
+        Node(int length) { keys = new Object[length]; }
+    }
+
+    private static final class Leaf extends Node {
+        final Object[] values;
+        Leaf next;
+        Leaf previous;
+
+        // One extra cell for the key that makes it overflow right before the split
+        Leaf(int order) {
+            super(order + 1);
+            values = new Object[order + 1];
+        }
+    }
+
+    private static final class Inner extends Node {
+        final Node[] children; // There is one more child than keys
+        final int[] sizes; // The number of keys under each child
+
+        Inner(int order) {
+            super(order);
+            children = new Node[order + 1];
+            sizes = new int[order + 1];
+        }
+    }
+
+    private final int order;
+    private final int minLeafKeys;
+    private final int minInnerKeys;
+    private Node root;
+    private int height; // The number of inner levels, the root is a leaf when it's 0
+    private int count;
+    private Class keyClass; // Need them for keySet() and values() methods
+    private Class valueClass;
+
+    // The way from the root to the last leaf we went down to, so that splits and merges can go back up
+    private Inner[] pathNodes = new Inner[8];
+    private int[] pathIndices = new int[8];
+
+    public BPlusTree() { this(DEFAULT_ORDER); }
+
+    /**
+     * @param order the maximum number of keys in a leaf and of children of an inner node
+     */
+    public BPlusTree(int order) {
+        if (order < 4) throw new IllegalArgumentException("Order must be at least 4");
+
+        this.order = order;
+        minLeafKeys = order >>> 1;
+        minInnerKeys = (order >>> 1) - 1;
+        root = new Leaf(order);
+    }
+
+    public boolean isEmpty() { return count == 0; }
+    public int size() { return count; }
+    public int order() { return order; }
+    public int depth() { return height + 1; }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) return "[]";
+
+        StringBuilder builder = new StringBuilder("[");
+        forEach((key, value) -> builder.append(key).append('=').append(value).append(", "));
+
+        int start   = builder.length() - 2;
+        int end     = builder.length();
+        builder.replace(start, end, "]");
+
+        return builder.toString();
+    }
+
+    private static <K> K keyAt(Node node, int i) { return (K) node.keys[i]; }
+
+    /**
+     * @return the number of keys in the node less than the specified one, or less than or equal to it if inclusive
+     */
+    private int search(Node node, K key, boolean inclusive) {
+        int low = 0;
+        int high = node.count;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = key.compareTo(keyAt(node, middle));
+
+            if (comparison > 0 || (comparison == 0 && inclusive)) low = middle + 1;
+            else high = middle;
+        }
+
+        return low;
+    }
+
+    // The keys equal to the separator are in the right child, so we go past all separators less than or equal to the key
+    private Leaf leafFor(K key) {
+        Node node = root;
+        for (int level = 0; level < height; level++) node = ((Inner) node).children[search(node, key, true)];
+        return (Leaf) node;
+    }
+
+    private Leaf firstLeaf() {
+        Node node = root;
+        for (int level = 0; level < height; level++) node = ((Inner) node).children[0];
+        return (Leaf) node;
+    }
+
+    /**
+     * Same as leafFor(), but remembers the inner nodes and the children taken at every level
+     */
+    private Leaf descend(K key) {
+        if (pathNodes.length < height) {
+            pathNodes = Arrays.copyOf(pathNodes, height << 1);
+            pathIndices = Arrays.copyOf(pathIndices, height << 1);
+        }
+
+        Node node = root;
+
+        for (int level = 0; level < height; level++) {
+            int i = search(node, key, true);
+            pathNodes[level] = (Inner) node;
+            pathIndices[level] = i;
+            node = pathNodes[level].children[i];
+        }
+
+        return (Leaf) node;
+    }
+
+    // The number of keys under the node at the level, the root is above all levels of the path
+    private int sizeAt(int level) { return level > 0 ? pathNodes[level - 1].sizes[pathIndices[level - 1]] : count; }
+
+    /*********************  GETTING ELEMENTS    **********************/
+    /*****************************************************************/
+
+    public boolean contains(K key) {
+        Leaf leaf = leafFor(key);
+        int i = search(leaf, key, false);
+        return i < leaf.count && key.compareTo(keyAt(leaf, i)) == 0;
+    }
+
+    public V get(K key) {
+        Leaf leaf = leafFor(key);
+        int i = search(leaf, key, false);
+        return i < leaf.count && key.compareTo(keyAt(leaf, i)) == 0 ? (V) leaf.values[i] : null;
+    }
+
+    /********************   INSERTION   ***************************/
+    /**************************************************************/
+
+    public void insert(K key, V value) { insert(key, value, true); }
+
+    /**
+     * @return the value that is already there with the key, it isn't replaced. Null if the key has been inserted
+     */
+    public V insertIfAbsent(K key, V value) { return insert(key, value, false); }
+
+    private V insert(K key, V value, boolean replace) {
+        Leaf leaf = descend(key);
+        int i = search(leaf, key, false);
+
+        if (i < leaf.count && key.compareTo(keyAt(leaf, i)) == 0) {
+            V existing = (V) leaf.values[i];
+            if (replace) leaf.values[i] = value;
+            return existing;
+        }
+
+        keyClass = key.getClass();
+        valueClass = value.getClass();
+
+        System.arraycopy(leaf.keys, i, leaf.keys, i + 1, leaf.count - i);
+        System.arraycopy(leaf.values, i, leaf.values, i + 1, leaf.count - i);
+        leaf.keys[i] = key;
+        leaf.values[i] = value;
+        ++leaf.count;
+        ++count;
+
+        for (int level = 0; level < height; level++) ++pathNodes[level].sizes[pathIndices[level]];
+
+        if (leaf.count > order) split(leaf);
+        return null;
+    }
+
+    private void split(Leaf leaf) {
+        Leaf right = new Leaf(order);
+        int keep = leaf.count >>> 1;
+        int moved = leaf.count - keep;
+
+        System.arraycopy(leaf.keys, keep, right.keys, 0, moved);
+        System.arraycopy(leaf.values, keep, right.values, 0, moved);
+        Arrays.fill(leaf.keys, keep, leaf.count, null);
+        Arrays.fill(leaf.values, keep, leaf.count, null);
+        right.count = moved;
+        leaf.count = keep;
+
+        right.next = leaf.next;
+        if (right.next != null) right.next.previous = right;
+        right.previous = leaf;
+        leaf.next = right;
+
+        addToParent(height - 1, right.keys[0], right, sizeAt(height) - moved, moved);
+    }
+
+    // Splits the inner node at the level of the path, the middle key moves up to the parent
+    private void split(int level) {
+        Inner node = pathNodes[level];
+        Inner right = new Inner(order);
+        int middle = node.count >>> 1;
+        int moved = node.count - middle - 1;
+        Object separator = node.keys[middle];
+
+        System.arraycopy(node.keys, middle + 1, right.keys, 0, moved);
+        System.arraycopy(node.children, middle + 1, right.children, 0, moved + 1);
+        System.arraycopy(node.sizes, middle + 1, right.sizes, 0, moved + 1);
+        Arrays.fill(node.keys, middle, node.count, null);
+        Arrays.fill(node.children, middle + 1, node.count + 1, null);
+        right.count = moved;
+        node.count = middle;
+
+        int rightSize = 0;
+        for (int i = 0; i <= moved; i++) rightSize += right.sizes[i];
+
+        addToParent(level - 1, separator, right, sizeAt(level) - rightSize, rightSize);
+    }
+
+    /**
+     * Puts the new right half of a split node next to the left one in the parent at the level of the path.
+     * The root has no parent, so a new root is made above it and the tree grows by one level.
+     */
+    private void addToParent(int level, Object separator, Node right, int leftSize, int rightSize) {
+        if (level < 0) {
+            Inner newRoot = new Inner(order);
+            newRoot.keys[0] = separator;
+            newRoot.children[0] = root;
+            newRoot.children[1] = right;
+            newRoot.sizes[0] = leftSize;
+            newRoot.sizes[1] = rightSize;
+            newRoot.count = 1;
+            root = newRoot;
+            ++height;
+            return;
+        }
+
+        Inner parent = pathNodes[level];
+        int i = pathIndices[level]; // The left half is children[i]
+
+        System.arraycopy(parent.keys, i, parent.keys, i + 1, parent.count - i);
+        System.arraycopy(parent.children, i + 1, parent.children, i + 2, parent.count - i);
+        System.arraycopy(parent.sizes, i + 1, parent.sizes, i + 2, parent.count - i);
+        parent.keys[i] = separator;
+        parent.children[i + 1] = right;
+        parent.sizes[i] = leftSize;
+        parent.sizes[i + 1] = rightSize;
+        ++parent.count;
+
+        if (parent.count == order) split(level); // One child too many
+    }
+
+    /**********************     DELETION    **************************/
+    /*****************************************************************/
+
+    public V delete(K key) {
+        Leaf leaf = descend(key);
+        int i = search(leaf, key, false);
+        if (i == leaf.count || key.compareTo(keyAt(leaf, i)) != 0) return null;
+
+        V value = (V) leaf.values[i];
+
+        System.arraycopy(leaf.keys, i + 1, leaf.keys, i, leaf.count - i - 1);
+        System.arraycopy(leaf.values, i + 1, leaf.values, i, leaf.count - i - 1);
+        --leaf.count;
+        leaf.keys[leaf.count] = null;
+        leaf.values[leaf.count] = null;
+        --count;
+
+        for (int level = 0; level < height; level++) --pathNodes[level].sizes[pathIndices[level]];
+
+        // Going up while nodes fall below half full. A merge takes a key from the parent, so it may fall below too
+        Node node = leaf;
+        for (int level = height - 1; level >= 0; level--) {
+            boolean isLeaf = level == height - 1;
+            if (node.count >= (isLeaf ? minLeafKeys : minInnerKeys)) break;
+            if (!rebalance(pathNodes[level], pathIndices[level], isLeaf)) break;
+            node = pathNodes[level];
+        }
+
+        // The root's last two children have been merged, the merged one becomes the root
+        if (height > 0 && root.count == 0) {
+            root = ((Inner) root).children[0];
+            --height;
+        }
+
+        return value;
+    }
+
+    /**
+     * Fills up the child of the parent that has fallen below half full
+     * @return true if it had to be merged with a sibling, then the parent has lost a key
+     */
+    private boolean rebalance(Inner parent, int i, boolean isLeaf) {
+        int min = isLeaf ? minLeafKeys : minInnerKeys;
+
+        if (i > 0 && parent.children[i - 1].count > min) {
+            if (isLeaf) borrowFromLeft(parent, i, (Leaf) parent.children[i]);
+            else borrowFromLeft(parent, i, (Inner) parent.children[i]);
+            return false;
+        }
+
+        if (i < parent.count && parent.children[i + 1].count > min) {
+            if (isLeaf) borrowFromRight(parent, i, (Leaf) parent.children[i]);
+            else borrowFromRight(parent, i, (Inner) parent.children[i]);
+            return false;
+        }
+
+        int left = i > 0 ? i - 1 : i;
+        if (isLeaf) merge(parent, left, (Leaf) parent.children[left]);
+        else merge(parent, left, (Inner) parent.children[left]);
+        return true;
+    }
+
+    private void borrowFromLeft(Inner parent, int i, Leaf leaf) {
+        Leaf left = (Leaf) parent.children[i - 1];
+
+        System.arraycopy(leaf.keys, 0, leaf.keys, 1, leaf.count);
+        System.arraycopy(leaf.values, 0, leaf.values, 1, leaf.count);
+        --left.count;
+        leaf.keys[0] = left.keys[left.count];
+        leaf.values[0] = left.values[left.count];
+        left.keys[left.count] = null;
+        left.values[left.count] = null;
+        ++leaf.count;
+
+        parent.keys[i - 1] = leaf.keys[0];
+        --parent.sizes[i - 1];
+        ++parent.sizes[i];
+    }
+
+    private void borrowFromRight(Inner parent, int i, Leaf leaf) {
+        Leaf right = (Leaf) parent.children[i + 1];
+
+        leaf.keys[leaf.count] = right.keys[0];
+        leaf.values[leaf.count] = right.values[0];
+        ++leaf.count;
+        --right.count;
+        System.arraycopy(right.keys, 1, right.keys, 0, right.count);
+        System.arraycopy(right.values, 1, right.values, 0, right.count);
+        right.keys[right.count] = null;
+        right.values[right.count] = null;
+
+        parent.keys[i] = right.keys[0];
+        ++parent.sizes[i];
+        --parent.sizes[i + 1];
+    }
+
+    // The left sibling's last child moves over, the separator goes down and the sibling's last key takes its place
+    private void borrowFromLeft(Inner parent, int i, Inner node) {
+        Inner left = (Inner) parent.children[i - 1];
+
+        System.arraycopy(node.keys, 0, node.keys, 1, node.count);
+        System.arraycopy(node.children, 0, node.children, 1, node.count + 1);
+        System.arraycopy(node.sizes, 0, node.sizes, 1, node.count + 1);
+        node.keys[0] = parent.keys[i - 1];
+        node.children[0] = left.children[left.count];
+        node.sizes[0] = left.sizes[left.count];
+        ++node.count;
+
+        parent.keys[i - 1] = left.keys[left.count - 1];
+        left.keys[left.count - 1] = null;
+        left.children[left.count] = null;
+        --left.count;
+
+        parent.sizes[i - 1] -= node.sizes[0];
+        parent.sizes[i] += node.sizes[0];
+    }
+
+    private void borrowFromRight(Inner parent, int i, Inner node) {
+        Inner right = (Inner) parent.children[i + 1];
+        int moved = right.sizes[0];
+
+        node.keys[node.count] = parent.keys[i];
+        node.children[node.count + 1] = right.children[0];
+        node.sizes[node.count + 1] = moved;
+        ++node.count;
+
+        parent.keys[i] = right.keys[0];
+        System.arraycopy(right.keys, 1, right.keys, 0, right.count - 1);
+        System.arraycopy(right.children, 1, right.children, 0, right.count);
+        System.arraycopy(right.sizes, 1, right.sizes, 0, right.count);
+        right.keys[right.count - 1] = null;
+        right.children[right.count] = null;
+        --right.count;
+
+        parent.sizes[i] += moved;
+        parent.sizes[i + 1] -= moved;
+    }
+
+    // Moves everything from the right sibling of the parent's i-th child into it
+    private void merge(Inner parent, int i, Leaf left) {
+        Leaf right = (Leaf) parent.children[i + 1];
+
+        System.arraycopy(right.keys, 0, left.keys, left.count, right.count);
+        System.arraycopy(right.values, 0, left.values, left.count, right.count);
+        left.count += right.count;
+
+        left.next = right.next;
+        if (left.next != null) left.next.previous = left;
+
+        removeFromParent(parent, i);
+    }
+
+    // The separator goes down between the keys of the two nodes
+    private void merge(Inner parent, int i, Inner left) {
+        Inner right = (Inner) parent.children[i + 1];
+
+        left.keys[left.count] = parent.keys[i];
+        System.arraycopy(right.keys, 0, left.keys, left.count + 1, right.count);
+        System.arraycopy(right.children, 0, left.children, left.count + 1, right.count + 1);
+        System.arraycopy(right.sizes, 0, left.sizes, left.count + 1, right.count + 1);
+        left.count += right.count + 1;
+
+        removeFromParent(parent, i);
+    }
+
+    // Removes the separator after the i-th child and the child after it, which has been merged into the i-th one
+    private void removeFromParent(Inner parent, int i) {
+        parent.sizes[i] += parent.sizes[i + 1];
+
+        System.arraycopy(parent.keys, i + 1, parent.keys, i, parent.count - i - 1);
+        System.arraycopy(parent.children, i + 2, parent.children, i + 1, parent.count - i - 1);
+        System.arraycopy(parent.sizes, i + 2, parent.sizes, i + 1, parent.count - i - 1);
+        parent.keys[parent.count - 1] = null;
+        parent.children[parent.count] = null;
+        --parent.count;
+    }
+
+    /*********************  ORDER STATISTICS  **********************/
+    /*****************************************************************/
+
+    public int rank(K key) { return countLess(key, false); }
+
+    // No key equal to the specified one can be before the child we go down to, so the sizes before it are all less
+    private int countLess(K key, boolean inclusive) {
+        int less = 0;
+        Node node = root;
+
+        for (int level = 0; level < height; level++) {
+            Inner inner = (Inner) node;
+            int i = search(inner, key, true);
+            for (int j = 0; j < i; j++) less += inner.sizes[j];
+            node = inner.children[i];
+        }
+
+        return less + search(node, key, inclusive);
+    }
+
+    public K select(int k) {
+        if (k < 0 || k >= count) return null;
+
+        Node node = root;
+
+        for (int level = 0; level < height; level++) {
+            Inner inner = (Inner) node;
+            int i = 0;
+            while (k >= inner.sizes[i]) k -= inner.sizes[i++];
+            node = inner.children[i];
+        }
+
+        return keyAt(node, k);
+    }
+
+    public int countInRange(K low, K high) {
+        if (low.compareTo(high) > 0) return 0;
+        return countLess(high, true) - countLess(low, false);
+    }
+
+    // The keys of the previous leaf are less than the separator we went past, so the floor may be its last one
+    public K floor(K key) {
+        Leaf leaf = leafFor(key);
+        int i = search(leaf, key, true) - 1;
+
+        if (i >= 0) return keyAt(leaf, i);
+        return leaf.previous != null ? keyAt(leaf.previous, leaf.previous.count - 1) : null;
+    }
+
+    public K ceiling(K key) {
+        Leaf leaf = leafFor(key);
+        int i = search(leaf, key, false);
+
+        if (i < leaf.count) return keyAt(leaf, i);
+        return leaf.next != null ? keyAt(leaf.next, 0) : null;
+    }
+
+    /**********************     TRAVERSAL    *************************/
+    /*****************************************************************/
+
+    /**
+     * Goes through the leaves from left to right, the tree above them isn't touched.
+     * The action must not modify the tree.
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (Leaf leaf = firstLeaf(); leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.count; i++) action.accept(keyAt(leaf, i), (V) leaf.values[i]);
+        }
+    }
+
+    /**
+     * Walks the entries with keys from one to another inclusive in ascending order, a null bound means there is no bound.
+     * It finds the first leaf in O(log n) and then moves along the leaves. The tree must not be modified while it's in use.
+     */
+    public final class Cursor implements SortedTreeMap.Cursor<K, V> {
+        private final K from;
+        private final K to;
+        private Leaf leaf;
+        private int index;
+
+        private Cursor(K from, K to) {
+            this.from = from;
+            this.to = to;
+            reset();
+        }
+
+        public void reset() {
+            if (from != null) {
+                leaf = leafFor(from);
+                index = search(leaf, from, false) - 1;
+            } else {
+                leaf = firstLeaf();
+                index = -1;
+            }
+        }
+
+        public boolean advance() {
+            if (leaf == null) return false;
+
+            if (++index == leaf.count) {
+                // Only the root can be an empty leaf, so the next leaf has at least one key
+                leaf = leaf.next;
+                index = 0;
+                if (leaf == null) return false;
+            }
+
+            if (to != null && to.compareTo(keyAt(leaf, index)) < 0) {
+                leaf = null;
+                return false;
+            }
+
+            return true;
+        }
+
+        public K key() {
+            if (leaf == null || index < 0) throw new IllegalStateException("The cursor is not at an entry");
+            return keyAt(leaf, index);
+        }
+
+        public V value() {
+            if (leaf == null || index < 0) throw new IllegalStateException("The cursor is not at an entry");
+            return (V) leaf.values[index];
+        }
+    }
+
+    public Cursor getCursor() { return new Cursor(null, null); }
+    public Cursor getCursor(K from, K to) { return new Cursor(from, to); }
+
+    // Whole leaves are copied at once
+    public K[] keySet() {
+        K[] keys = (K[]) Array.newInstance(keyClass, count);
+
+        int i = 0;
+        for (Leaf leaf = firstLeaf(); leaf != null; i += leaf.count, leaf = leaf.next) {
+            System.arraycopy(leaf.keys, 0, keys, i, leaf.count);
+        }
+
+        return keys;
+    }
+
+    public V[] values() {
+        V[] values = (V[]) Array.newInstance(valueClass, count);
+
+        int i = 0;
+        for (Leaf leaf = firstLeaf(); leaf != null; i += leaf.count, leaf = leaf.next) {
+            System.arraycopy(leaf.values, 0, values, i, leaf.count);
+        }
+
+        return values;
+    }
+
+    /********************   BULK LOADING   ************************/
+    /**************************************************************/
+
+    /**
+     * Fills an empty tree in O(n) from distinct keys in ascending order, bottom up: the keys are cut into leaves,
+     * the leaves are grouped under inner nodes, and so on until one node is left. The nodes of every level
+     * are filled evenly, so each of them is at least half full like after a series of inserts, and the first key of
+     * every child but the first one becomes a separator.
+     * @throws IllegalArgumentException if the keys are not distinct and in ascending order
+     */
+    private void load(K[] keys, V[] values, int count) {
+        for (int i = 1; i < count; i++) {
+            if (keys[i - 1].compareTo(keys[i]) >= 0) throw new IllegalArgumentException("The keys are not distinct and in ascending order");
+        }
+
+        if (count == 0) return;
+
+        int leaves = (count + order - 1) / order;
+        Node[] nodes = new Node[leaves];
+        int[] sizes = new int[leaves];
+        Object[] firstKeys = new Object[leaves];
+        Leaf previous = null;
+
+        for (int i = 0, from = 0; i < leaves; i++) {
+            Leaf leaf = new Leaf(order);
+            int n = count / leaves + (i < count % leaves ? 1 : 0);
+
+            System.arraycopy(keys, from, leaf.keys, 0, n);
+            System.arraycopy(values, from, leaf.values, 0, n);
+            leaf.count = n;
+
+            leaf.previous = previous;
+            if (previous != null) previous.next = leaf;
+            previous = leaf;
+
+            nodes[i] = leaf;
+            sizes[i] = n;
+            firstKeys[i] = keys[from];
+            from += n;
+        }
+
+        // An inner node has up to order children
+        int levels = 0;
+
+        while (nodes.length > 1) {
+            int parents = (nodes.length + order - 1) / order;
+            Node[] upperNodes = new Node[parents];
+            int[] upperSizes = new int[parents];
+            Object[] upperFirstKeys = new Object[parents];
+
+            for (int i = 0, from = 0; i < parents; i++) {
+                Inner inner = new Inner(order);
+                int n = nodes.length / parents + (i < nodes.length % parents ? 1 : 0);
+                int size = 0;
+
+                for (int child = 0; child < n; child++) {
+                    inner.children[child] = nodes[from + child];
+                    inner.sizes[child] = sizes[from + child];
+                    if (child > 0) inner.keys[child - 1] = firstKeys[from + child];
+                    size += sizes[from + child];
+                }
+
+                inner.count = n - 1;
+                upperNodes[i] = inner;
+                upperSizes[i] = size;
+                upperFirstKeys[i] = firstKeys[from];
+                from += n;
+            }
+
+            nodes = upperNodes;
+            sizes = upperSizes;
+            firstKeys = upperFirstKeys;
+            ++levels;
+        }
+
+        root = nodes[0];
+        height = levels;
+        this.count = count;
+        keyClass = keys[0].getClass();
+        valueClass = values[0].getClass();
+    }
+
+    /** This part is for SortedSet **/
+    /************************************************************/
+
+    /**
+     * A B+tree of elements for SortedSet. Every element is stored as its own value, so get() and delete() return
+     * the element that is in the tree, like the binary trees do.
+     */
+    public static final class SetDecorator<T extends Comparable<T>> implements SortedTree<T> {
+        private final BPlusTree<T, T> storage;
+
+        public SetDecorator() { this(DEFAULT_ORDER); }
+        public SetDecorator(int order) { storage = new BPlusTree<>(order); }
+
+        @Override
+        public String toString() {
+            return isEmpty() ? "[]" : Arrays.toString(toArray());
+        }
+
+        public boolean isEmpty() { return storage.isEmpty(); }
+        public int size() { return storage.size(); }
+        public boolean contains(T element) { return storage.contains(element); }
+
+        // The keys are distinct anyway
+        public void insert(T element) { storage.insertIfAbsent(element, element); }
+
+        public T insertIfAbsent(T element) {
+            T existing = storage.insertIfAbsent(element, element);
+            return existing != null ? existing : element;
+        }
+
+        public T get(T element) { return storage.get(element); }
+        public T delete(T element) { return storage.delete(element); }
+
+        public int rank(T element) { return storage.rank(element); }
+        public T select(int k) { return storage.select(k); }
+        public int countInRange(T low, T high) { return storage.countInRange(low, high); }
+        public T floor(T element) { return storage.floor(element); }
+        public T ceiling(T element) { return storage.ceiling(element); }
+
+        public void forEach(Consumer<? super T> action) { storage.forEach((key, element) -> action.accept(element)); }
+
+        public final class Cursor implements SortedTree.Cursor<T> {
+            private final BPlusTree<T, T>.Cursor cursor;
+
+            private Cursor(T from, T to) { cursor = storage.getCursor(from, to); }
+
+            public void reset() { cursor.reset(); }
+            public boolean advance() { return cursor.advance(); }
+            public T element() { return cursor.value(); }
+        }
+
+        public Cursor getCursor() { return new Cursor(null, null); }
+        public Cursor getCursor(T from, T to) { return new Cursor(from, to); }
+
+        public T[] toArray() { return storage.values(); }
+
+        public SetDecorator<T> empty() { return new SetDecorator<>(storage.order); }
+
+        public SetDecorator<T> withSorted(T[] sorted, int count) {
+            SetDecorator<T> tree = empty();
+            tree.storage.load(sorted, sorted, count);
+            return tree;
+        }
+    }
+}
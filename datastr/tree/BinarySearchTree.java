@@ -2,11 +2,15 @@ package datastr.tree;
 
 import datastr.tree.Node;
 
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
 /**
  * Created by Renat Kaitmazov on 08/08/15.
  */
 
-public final class BinarySearchTree<T extends Comparable<T>> {
+public final class BinarySearchTree<T extends Comparable<T>> implements Iterable<T> {
     private Node<T> root    = null;
     private int count       = 0; // we can find out the size of the tree recursively but this approach is more efficient
 
@@ -16,7 +20,8 @@ public final class BinarySearchTree<T extends Comparable<T>> {
         if (isEmpty()) return "[]";
 
         StringBuilder builder = new StringBuilder("[");
-        inOrderString(root, builder);
+        // No recursion, a tree built from sorted input is as deep as it is long
+        for (Node<T> node = root.leftmost(); node != null; node = node.next()) builder.append(node.toString()).append(", ");
 
         int start   = builder.length() - 2;
         int end     = builder.length();
@@ -26,12 +31,67 @@ public final class BinarySearchTree<T extends Comparable<T>> {
         return builder.toString();
     }
 
-    private void inOrderString(Node<T> node, StringBuilder builder) {
-        if (node != null) {
-            inOrderString(node.leftChild(), builder);
-            builder.append(node.toString()).append(", ");
-            inOrderString(node.rightChild(), builder);
-        }
+    /**
+     * A lazy iterator over the elements in ascending order. It follows the parent references from one node
+     * to the next, so it needs O(1) extra space however deep the tree is. The tree must not be modified while it's in use.
+     */
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private Node<T> next = root != null ? root.leftmost() : null;
+
+            public boolean hasNext() { return next != null; }
+
+            public T next() {
+                if (next == null) throw new NoSuchElementException();
+
+                T data = next.data();
+                next = next.next();
+                return data;
+            }
+        };
+    }
+
+                        /*** Bulk Loading ***/
+
+    /**
+     * Builds a tree from elements that are already in ascending order in O(n). Inserting them one by one
+     * would put every element to the right of the previous one, so the tree would turn into a list
+     * and take O(n^2). Here the middle element becomes the root and the halves are built the same way,
+     * so the tree is as shallow as possible.
+     * @throws IllegalArgumentException if the elements are not in ascending order
+     */
+    public static <T extends Comparable<T>> BinarySearchTree<T> fromSorted(T[] sorted) {
+        return fromSorted(Arrays.asList(sorted).iterator(), sorted.length);
+    }
+
+    /**
+     * @param size the number of elements to take from the iterator
+     */
+    public static <T extends Comparable<T>> BinarySearchTree<T> fromSorted(Iterator<? extends T> sorted, int size) {
+        BinarySearchTree<T> tree = new BinarySearchTree<>();
+        if (size <= 0) return tree;
+
+        tree.root = build(new SortedInput<>(sorted), 0, size - 1);
+        tree.count = size;
+        return tree;
+    }
+
+    // The elements are read in order, so the left subtree is built before its parent and the right one after it
+    private static <T extends Comparable<T>> Node<T> build(SortedInput<T> input, int low, int high) {
+        if (low > high) return null;
+
+        int middle = (low + high) >>> 1;
+        Node<T> left = build(input, low, middle - 1);
+        Node<T> node = new Node<>(input.next());
+
+        node.setLeftChild(left);
+        if (left != null) left.setParent(node);
+
+        Node<T> right = build(input, middle + 1, high);
+        node.setRightChild(right);
+        if (right != null) right.setParent(node);
+
+        return node;
     }
 
                         /*** State Information ***/
@@ -106,6 +166,19 @@ public final class BinarySearchTree<T extends Comparable<T>> {
 
                         /* Deletion */
 
+    // Puts the child (possibly null) in place of the node under the node's parent, the iterator needs the parent references
+    private void replaceChild(Node<T> parent, Node<T> node, Node<T> child) {
+        if (node == root) {
+            root = child;
+            parent = null;
+        } else if (node.isLeftChild())
+            parent.setLeftChild(child);
+        else
+            parent.setRightChild(child);
+
+        if (child != null) child.setParent(parent);
+    }
+
     private Node<T> getReplacementNode(Node<T> nodeToDelete) {
 
         // This operation is involved when finding an appropriate successor to replace a node that
@@ -122,13 +195,16 @@ public final class BinarySearchTree<T extends Comparable<T>> {
 
         if (replacementNode != nodeToDelete.rightChild()) {
 
-            if (replacementNode.hasRightChild())
-                replacementNodeParent.setLeftChild(replacementNode.rightChild());
+            // The replacement's right subtree takes its place, even if it's empty
+            replacementNodeParent.setLeftChild(replacementNode.rightChild());
+            if (replacementNode.hasRightChild()) replacementNode.rightChild().setParent(replacementNodeParent);
 
             replacementNode.setRightChild(nodeToDelete.rightChild());
+            nodeToDelete.rightChild().setParent(replacementNode);
         }
 
         replacementNode.setLeftChild(nodeToDelete.leftChild());
+        nodeToDelete.leftChild().setParent(replacementNode);
 
         return replacementNode;
     }
@@ -158,47 +234,25 @@ public final class BinarySearchTree<T extends Comparable<T>> {
 
             // If it is a leaf node, that is, does not have any children
 
-            if (nodeToDelete == root)
-                root = null;
-            else if (nodeToDelete.isLeftChild())
-                parentNode.setLeftChild(null);
-            else
-                parentNode.setRightChild(null);
+            replaceChild(parentNode, nodeToDelete, null);
 
         } else if (!nodeToDelete.hasRightChild()) {
 
             // If it has a left node only
 
-            if (nodeToDelete == root)
-                root = root.leftChild();
-            else if (nodeToDelete.isLeftChild())
-                parentNode.setLeftChild(nodeToDelete.leftChild());
-            else
-                parentNode.setRightChild(nodeToDelete.leftChild());
+            replaceChild(parentNode, nodeToDelete, nodeToDelete.leftChild());
 
         } else if (!nodeToDelete.hasLeftChild()) {
 
             // If it has a right node only
 
-            if (nodeToDelete == root)
-                root = root.rightChild();
-            else if (nodeToDelete.isLeftChild())
-                parentNode.setLeftChild(nodeToDelete.rightChild());
-            else
-                parentNode.setRightChild(nodeToDelete.rightChild());
+            replaceChild(parentNode, nodeToDelete, nodeToDelete.rightChild());
 
         } else {
 
             // If it has both nodes
 
-            Node<T> replacementNode = getReplacementNode(nodeToDelete);
-
-            if (nodeToDelete == root)
-                root = replacementNode;
-            else if (nodeToDelete.isLeftChild())
-                parentNode.setLeftChild(replacementNode);
-            else
-                parentNode.setRightChild(replacementNode);
+            replaceChild(parentNode, nodeToDelete, getReplacementNode(nodeToDelete));
 
         }
 
@@ -216,12 +270,7 @@ public final class BinarySearchTree<T extends Comparable<T>> {
             current = current.leftChild();
         }
 
-        if (current == root)
-            root = root.rightChild();
-        else if (current.hasRightChild())
-            parent.setLeftChild(current.rightChild());
-        else
-            parent.setLeftChild(null);
+        replaceChild(parent, current, current.rightChild());
 
         --count;
 
@@ -238,13 +287,7 @@ public final class BinarySearchTree<T extends Comparable<T>> {
             current = current.rightChild();
         }
 
-
-        if (current == root)
-            root = root.leftChild();
-        else if (current.hasLeftChild())
-            parent.setRightChild(current.leftChild());
-        else
-            parent.setRightChild(null);
+        replaceChild(parent, current, current.leftChild());
 
         --count;
 
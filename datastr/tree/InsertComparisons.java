@@ -0,0 +1,98 @@
+package datastr.tree;
+
+import datastr.hashmap.SortedMap;
+import datastr.set.SortedSet;
+
+import java.util.Random;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * Counts the compareTo() calls made by inserting the same random keys, about half of them repeated,
+ * into SortedSet and SortedMap, and into trees used the way those two used them before insertIfAbsent():
+ *   SortedSet called contains() and then insert(), so a new key walked down the tree twice.
+ *   SortedMap called find(), comparing the keys once per level, and then insert() whose Item.compareTo()
+ *   compared the keys a second time unless the first comparison was positive.
+ * The counts only depend on the keys, not on the machine:
+ *   java datastr.tree.InsertComparisons [inserts] [key range]
+ */
+
+public final class InsertComparisons {
+    private static long comparisons;
+
+    // An int key that counts its comparisons
+    private static final class Key implements Comparable<Key> {
+        private final int value;
+
+        Key(int value) { this.value = value; }
+
+        public int compareTo(Key key) {
+            ++comparisons;
+            return Integer.compare(value, key.value);
+        }
+
+        @Override public boolean equals(Object other) { return other instanceof Key && ((Key) other).value == value; }
+        @Override public int hashCode() { return value; }
+    }
+
+    // The item SortedMap kept in its tree before, a probe stands for the old find() that compared the keys once
+    private static final class OldItem implements Comparable<OldItem> {
+        private final Key key;
+        private final boolean probe;
+
+        OldItem(Key key, boolean probe) {
+            this.key = key;
+            this.probe = probe;
+        }
+
+        public int compareTo(OldItem item) {
+            if (probe) return key.compareTo(item.key);
+
+            if (key.compareTo(item.key) > 0) return 1;
+            if (key.compareTo(item.key) < 0) return -1;
+            return 0;
+        }
+
+        // The old find() stopped at the first node whose key was equal without comparing it
+        @Override public boolean equals(Object other) { return other instanceof OldItem && ((OldItem) other).key.equals(key); }
+        @Override public int hashCode() { return key.hashCode(); }
+    }
+
+    public static void main(String[] args) {
+        int inserts = args.length > 0 ? Integer.parseInt(args[0]) : 400_000;
+        int range = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+
+        Key[] keys = new Key[inserts];
+        Random random = new Random(1);
+        for (int i = 0; i < inserts; i++) keys[i] = new Key(random.nextInt(range));
+
+        RedBlackBST<Key> oldSet = new RedBlackBST<>();
+        comparisons = 0;
+        for (Key key: keys) if (!oldSet.contains(key)) oldSet.insert(key);
+        long setBefore = comparisons;
+
+        SortedSet<Key> set = new SortedSet<>();
+        comparisons = 0;
+        for (Key key: keys) set.insert(key);
+        long setAfter = comparisons;
+
+        RedBlackBST<OldItem> oldMap = new RedBlackBST<>();
+        comparisons = 0;
+        for (Key key: keys) if (!oldMap.contains(new OldItem(key, true))) oldMap.insert(new OldItem(key, false));
+        long mapBefore = comparisons;
+
+        SortedMap<Key, Integer> map = new SortedMap<>();
+        comparisons = 0;
+        for (int i = 0; i < inserts; i++) map.insert(keys[i], i);
+        long mapAfter = comparisons;
+
+        if (set.size() != oldSet.size() || map.size() != set.size() || oldMap.size() != set.size())
+            throw new AssertionError("The sets and maps disagree on the number of keys");
+
+        System.out.printf("%,d inserts of keys from 0 to %,d, %,d of them distinct%n", inserts, range - 1, set.size());
+        System.out.printf("SortedSet: %,d compareTo() calls before, %,d after%n", setBefore, setAfter);
+        System.out.printf("SortedMap: %,d compareTo() calls before, %,d after%n", mapBefore, mapAfter);
+    }
+}
@@ -11,6 +11,7 @@ final class Node<T extends Comparable<T>> {
     private Node<T> leftChild;
     private Node<T> rightChild;
     private boolean isRed = true;
+    private int size = 1; // The number of nodes in the subtree rooted at this node, used by order statistics
 
     Node(T data) { this.data = data; }
 
@@ -23,6 +24,7 @@ final class Node<T extends Comparable<T>> {
     public Node<T> rightChild() { return rightChild; }
     public Node<T> parent()     { return parent; }
     public boolean isRed()      { return isRed; }
+    public int size()           { return size; }
 
 
     // Setters
@@ -31,6 +33,7 @@ final class Node<T extends Comparable<T>> {
     public void setRightChild(Node<T> rightChild)   { this.rightChild   = rightChild; }
     public void setParent(Node<T> parent)           { this.parent       = parent; }
     public void setColor(boolean color)             { isRed             = color; }
+    public void setSize(int size)                   { this.size         = size; }
 
     // Helper methods
     public boolean hasLeftChild()   { return leftChild      != null; }
@@ -41,6 +44,11 @@ final class Node<T extends Comparable<T>> {
     public void flipColor()         { isRed = !isRed; }
     public void blacken()           { isRed = false; }
 
+    // Recomputes the size from the children's sizes, they must be correct already
+    public void updateSize() {
+        size = 1 + (leftChild != null ? leftChild.size : 0) + (rightChild != null ? rightChild.size : 0);
+    }
+
     // Helper method for insertion in a red black tree
     public Node<T> uncle() {
         Node<T> grand = parent.parent;
@@ -61,6 +69,23 @@ final class Node<T extends Comparable<T>> {
         return successor;
     }
 
+    // Helper methods for traversal, they follow the parent references, so no stack is needed
+    public Node<T> leftmost() {
+        Node<T> node = this;
+        while (node.hasLeftChild()) node = node.leftChild;
+        return node;
+    }
+
+    // The node with the next element in ascending order or null if this one is the last
+    public Node<T> next() {
+        if (hasRightChild()) return successor();
+
+        // Otherwise it is the first ancestor we reach from its left subtree
+        Node<T> node = this;
+        while (node.parent != null && node.isRightChild()) node = node.parent;
+        return node.parent;
+    }
+
     public Node<T> outsideNephew() {
         return isLeftChild() ? sibling().rightChild() : sibling().leftChild();
     }
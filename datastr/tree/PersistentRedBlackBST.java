@@ -0,0 +1,395 @@
+package datastr.tree;
+
+import java.lang.reflect.Array;
+import java.util.function.BiConsumer;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * A red black tree whose nodes never change once they are built. An insert or a delete doesn't modify the tree,
+ * it copies the nodes on the path from the root to the changed node (O(log n) of them) and the copies point to
+ * the old untouched subtrees. The new root is a new version of the tree, and every old version stays as it was.
+ *
+ * So snapshot() is O(1): it just remembers the current root. A snapshot can be read by any number of threads
+ * without any synchronization while writers keep changing the tree, since nothing a reader can reach is ever
+ * modified. Only the writers take a lock among themselves.
+ *
+ * A path copying version of a classic red black tree with parent references would have to copy the whole tree,
+ * since every node is referenced by its children, so this one has no parent references. It is a left-leaning red
+ * black tree (a red node is always a left child), which keeps insertion and deletion short enough to be written
+ * as functions returning a new subtree.
+ */
+
+public final class PersistentRedBlackBST<K extends Comparable<K>, V> implements SortedTreeMap<K, V> {
+    private static final int MAX_DEPTH = 64; // A red black tree with fewer than 2^31 nodes is never deeper than that
+
+    private static final class Node<K, V> {
+        private final K key;
+        private final V value;
+        private final Node<K, V> left;
+        private final Node<K, V> right;
+        private final boolean isRed;
+        private final int size; // The number of nodes in the subtree, used by order statistics
+
+        Node(K key, V value, Node<K, V> left, Node<K, V> right, boolean isRed) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.isRed = isRed;
+            size = 1 + sizeOf(left) + sizeOf(right);
+        }
+
+        // Copies with one field changed
+        Node<K, V> withLeft(Node<K, V> left) { return new Node<>(key, value, left, right, isRed); }
+        Node<K, V> withRight(Node<K, V> right) { return new Node<>(key, value, left, right, isRed); }
+        Node<K, V> withColor(boolean isRed) { return this.isRed == isRed ? this : new Node<>(key, value, left, right, isRed); }
+    }
+
+    private volatile Node<K, V> root; // Volatile, so a reader always gets a fully built version
+    private Class keyClass; // Need them for keySet() and values() methods
+    private Class valueClass;
+
+    public PersistentRedBlackBST() {}
+
+    private PersistentRedBlackBST(Node<K, V> root, Class keyClass, Class valueClass) {
+        this.root = root;
+        this.keyClass = keyClass;
+        this.valueClass = valueClass;
+    }
+
+    /**
+     * @return a tree with the current version in O(1). It shares all its nodes with this one, but changes made
+     * to either of them later are not seen by the other
+     */
+    public PersistentRedBlackBST<K, V> snapshot() { return new PersistentRedBlackBST<>(root, keyClass, valueClass); }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) return "[]";
+
+        StringBuilder builder = new StringBuilder("[");
+        forEach((key, value) -> builder.append(String.format("%s=%s", key.toString(), value.toString())).append(", "));
+
+        int start   = builder.length() - 2;
+        int end     = builder.length();
+        builder.replace(start, end, "]");
+
+        return builder.toString();
+    }
+
+    private static int sizeOf(Node<?, ?> node) { return node != null ? node.size : 0; }
+    private static boolean isRed(Node<?, ?> node) { return node != null && node.isRed; }
+
+    public boolean isEmpty() { return root == null; }
+    public int size() { return sizeOf(root); }
+    public boolean contains(K key) { return get(key) != null; }
+
+    // Every method reads the root once, so it works with a single version even if a writer replaces it meanwhile
+
+    public V get(K key) {
+        Node<K, V> node = root;
+
+        while (node != null) {
+            int comparison = key.compareTo(node.key);
+            if (comparison == 0) return node.value;
+            node = comparison < 0 ? node.left : node.right;
+        }
+
+        return null;
+    }
+
+    /********************   BALANCING   ***************************/
+    /**************************************************************/
+
+    // Every rotation and color flip returns new nodes instead of changing the old ones
+
+    private static <K, V> Node<K, V> rotateLeft(Node<K, V> node) {
+        Node<K, V> right = node.right;
+        Node<K, V> newLeft = new Node<>(node.key, node.value, node.left, right.left, true);
+        return new Node<>(right.key, right.value, newLeft, right.right, node.isRed);
+    }
+
+    private static <K, V> Node<K, V> rotateRight(Node<K, V> node) {
+        Node<K, V> left = node.left;
+        Node<K, V> newRight = new Node<>(node.key, node.value, left.right, node.right, true);
+        return new Node<>(left.key, left.value, left.left, newRight, node.isRed);
+    }
+
+    private static <K, V> Node<K, V> flipColors(Node<K, V> node) {
+        return new Node<>(node.key, node.value,
+                node.left.withColor(!node.left.isRed), node.right.withColor(!node.right.isRed), !node.isRed);
+    }
+
+    // Restores the left-leaning invariants on the way back up
+    private static <K, V> Node<K, V> balance(Node<K, V> node) {
+        if (isRed(node.right) && !isRed(node.left)) node = rotateLeft(node);
+        if (isRed(node.left) && isRed(node.left.left)) node = rotateRight(node);
+        if (isRed(node.left) && isRed(node.right)) node = flipColors(node);
+        return node;
+    }
+
+    /********************   INSERTION   ***************************/
+    /**************************************************************/
+
+    public synchronized void insert(K key, V value) {
+        keyClass = key.getClass();
+        valueClass = value.getClass();
+        root = insert(root, key, value).withColor(false);
+    }
+
+    private static <K extends Comparable<K>, V> Node<K, V> insert(Node<K, V> node, K key, V value) {
+        if (node == null) return new Node<>(key, value, null, null, true);
+
+        int comparison = key.compareTo(node.key);
+
+        if (comparison < 0) node = node.withLeft(insert(node.left, key, value));
+        else if (comparison > 0) node = node.withRight(insert(node.right, key, value));
+        else node = new Node<>(node.key, value, node.left, node.right, node.isRed);
+
+        return balance(node);
+    }
+
+    /**********************     DELETION    **************************/
+    /*****************************************************************/
+
+    public synchronized V delete(K key) {
+        V value = get(key);
+        if (value == null) return null;
+
+        Node<K, V> newRoot = root;
+        // If both children of the root are black, the root is made red, so there is a red node to move down
+        if (!isRed(newRoot.left) && !isRed(newRoot.right)) newRoot = newRoot.withColor(true);
+
+        newRoot = delete(newRoot, key);
+        root = newRoot != null ? newRoot.withColor(false) : null;
+        return value;
+    }
+
+    /**
+     * On the way down we make sure the current node or its left child is red, carrying a red node along,
+     * so the node we end up removing is red and removing it doesn't change the number of black nodes on any path
+     */
+    private static <K extends Comparable<K>, V> Node<K, V> delete(Node<K, V> node, K key) {
+        if (key.compareTo(node.key) < 0) {
+            if (!isRed(node.left) && !isRed(node.left.left)) node = moveRedLeft(node);
+            node = node.withLeft(delete(node.left, key));
+        } else {
+            if (isRed(node.left)) node = rotateRight(node);
+            if (key.compareTo(node.key) == 0 && node.right == null) return null;
+            if (!isRed(node.right) && !isRed(node.right.left)) node = moveRedRight(node);
+
+            if (key.compareTo(node.key) == 0) {
+                // The node takes the place of the smallest node in its right subtree, which is removed instead
+                Node<K, V> successor = node.right;
+                while (successor.left != null) successor = successor.left;
+                node = new Node<>(successor.key, successor.value, node.left, deleteMin(node.right), node.isRed);
+            } else {
+                node = node.withRight(delete(node.right, key));
+            }
+        }
+
+        return balance(node);
+    }
+
+    private static <K, V> Node<K, V> deleteMin(Node<K, V> node) {
+        if (node.left == null) return null;
+
+        if (!isRed(node.left) && !isRed(node.left.left)) node = moveRedLeft(node);
+        node = node.withLeft(deleteMin(node.left));
+
+        return balance(node);
+    }
+
+    // Makes the left child or one of its children red, borrowing from the right sibling if it can
+    private static <K, V> Node<K, V> moveRedLeft(Node<K, V> node) {
+        node = flipColors(node);
+
+        if (isRed(node.right.left)) {
+            node = node.withRight(rotateRight(node.right));
+            node = flipColors(rotateLeft(node));
+        }
+
+        return node;
+    }
+
+    private static <K, V> Node<K, V> moveRedRight(Node<K, V> node) {
+        node = flipColors(node);
+        if (isRed(node.left.left)) node = flipColors(rotateRight(node));
+        return node;
+    }
+
+    /*********************  ORDER STATISTICS  **********************/
+    /*****************************************************************/
+
+    public int rank(K key) { return countLess(root, key, false); }
+
+    private int countLess(Node<K, V> node, K key, boolean inclusive) {
+        int less = 0;
+
+        while (node != null) {
+            int comparison = key.compareTo(node.key);
+
+            if (comparison < 0 || (comparison == 0 && !inclusive)) node = node.left;
+            else {
+                less += sizeOf(node.left) + 1;
+                node = node.right;
+            }
+        }
+
+        return less;
+    }
+
+    public K select(int k) {
+        Node<K, V> node = root;
+        if (k < 0 || k >= sizeOf(node)) return null;
+
+        while (true) {
+            int leftSize = sizeOf(node.left);
+
+            if (k < leftSize) node = node.left;
+            else if (k == leftSize) return node.key;
+            else {
+                k -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    public int countInRange(K low, K high) {
+        if (low.compareTo(high) > 0) return 0;
+
+        Node<K, V> version = root;
+        return countLess(version, high, true) - countLess(version, low, false);
+    }
+
+    public K floor(K key) {
+        K floor = null;
+        Node<K, V> node = root;
+
+        while (node != null) {
+            if (key.compareTo(node.key) < 0) node = node.left;
+            else {
+                floor = node.key;
+                node = node.right;
+            }
+        }
+
+        return floor;
+    }
+
+    public K ceiling(K key) {
+        K ceiling = null;
+        Node<K, V> node = root;
+
+        while (node != null) {
+            if (key.compareTo(node.key) > 0) node = node.right;
+            else {
+                ceiling = node.key;
+                node = node.left;
+            }
+        }
+
+        return ceiling;
+    }
+
+    /**********************     TRAVERSAL    *************************/
+    /*****************************************************************/
+
+    /**
+     * Calls the action for every item of the current version in ascending order of the keys.
+     * The tree may be changed meanwhile, even by the action itself, the walk doesn't see that.
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Cursor cursor = new Cursor(root, null, null);
+        while (cursor.advance()) action.accept(cursor.key(), cursor.value());
+    }
+
+    /**
+     * Walks the items of the version that was current when the cursor was made, with keys from one to another
+     * inclusive, a null bound means there is no bound. There are no parent references, so the cursor keeps the
+     * nodes it has yet to come back to on a stack, one per level at most.
+     */
+    public final class Cursor implements SortedTreeMap.Cursor<K, V> {
+        private final Node<K, V> version;
+        private final K from;
+        private final K to;
+        private final Node<K, V>[] stack = (Node<K, V>[]) new Node[MAX_DEPTH];
+        private int top;
+        private Node<K, V> current;
+
+        private Cursor(Node<K, V> version, K from, K to) {
+            this.version = version;
+            this.from = from;
+            this.to = to;
+            reset();
+        }
+
+        // Pushes the nodes that come after the bound, the top one is the first of them
+        public void reset() {
+            top = 0;
+            current = null;
+
+            for (Node<K, V> node = version; node != null; ) {
+                if (from == null || from.compareTo(node.key) <= 0) {
+                    stack[top++] = node;
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+            }
+        }
+
+        public boolean advance() {
+            if (top == 0) {
+                current = null;
+                return false;
+            }
+
+            current = stack[--top];
+            for (Node<K, V> node = current.right; node != null; node = node.left) stack[top++] = node;
+
+            if (to != null && current.key.compareTo(to) > 0) {
+                top = 0;
+                current = null;
+                return false;
+            }
+
+            return true;
+        }
+
+        public K key() {
+            if (current == null) throw new IllegalStateException("The cursor is not at an item");
+            return current.key;
+        }
+
+        public V value() {
+            if (current == null) throw new IllegalStateException("The cursor is not at an item");
+            return current.value;
+        }
+    }
+
+    public Cursor getCursor(K from, K to) { return new Cursor(root, from, to); }
+
+    public K[] keySet() {
+        Node<K, V> version = root;
+        K[] keys = (K[]) Array.newInstance(keyClass, sizeOf(version));
+
+        int i = 0;
+        for (Cursor cursor = new Cursor(version, null, null); cursor.advance(); ) keys[i++] = cursor.key();
+
+        return keys;
+    }
+
+    public V[] values() {
+        Node<K, V> version = root;
+        V[] values = (V[]) Array.newInstance(valueClass, sizeOf(version));
+
+        int i = 0;
+        for (Cursor cursor = new Cursor(version, null, null); cursor.advance(); ) values[i++] = cursor.value();
+
+        return values;
+    }
+}
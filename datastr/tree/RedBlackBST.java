@@ -1,12 +1,17 @@
 package datastr.tree;
 
 import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * Created by Renat Kaitmazov on 17/08/15.
  */
 
-public final class RedBlackBST<T extends Comparable<T>> {
+public final class RedBlackBST<T extends Comparable<T>> implements SortedTree<T>, Iterable<T> {
 
     /** This part is for SortedMap **/
     /************************************************************/
@@ -24,18 +29,39 @@ public final class RedBlackBST<T extends Comparable<T>> {
 
         public void setValue(V value) { this.value = value; }
 
-        public int compareTo(Item<K, V> item) {
-            if (key.compareTo(item.key) > 0) return 1;
-            if (key.compareTo(item.key) < 0) return -1;
-            return 0;
-        }
+        // A single comparison of the keys, the tree only looks at the sign
+        public int compareTo(Item<K, V> item) { return key.compareTo(item.key); }
     }
 
-    public static class RBTreeDecorator<K extends Comparable<K>, V> {
+    public static class RBTreeDecorator<K extends Comparable<K>, V> implements SortedTreeMap<K, V> {
         private Class keyClass;
         private Class valueClass;
         private RedBlackBST<Item<K, V>> storage = new RedBlackBST<>();
 
+        /**
+         * Builds the map in O(n) from keys in ascending order, see RedBlackBST.fromSorted().
+         * Equal keys are next to each other, the last one's value is kept like when they are inserted one by one
+         */
+        public static <K extends Comparable<K>, V> RBTreeDecorator<K, V> fromSorted(K[] keys, V[] values) {
+            Item<K, V>[] items = (Item<K, V>[]) new Item[keys.length];
+            int count = 0;
+
+            for (int i = 0; i < keys.length; i++) {
+                if (count > 0 && items[count - 1].key.compareTo(keys[i]) == 0) items[count - 1].setValue(values[i]);
+                else items[count++] = new Item<>(keys[i], values[i]);
+            }
+
+            RBTreeDecorator<K, V> map = new RBTreeDecorator<>();
+            map.storage = RedBlackBST.fromSorted(Arrays.asList(items).iterator(), count);
+
+            if (count > 0) {
+                map.keyClass = keys[keys.length - 1].getClass();
+                map.valueClass = values[values.length - 1].getClass();
+            }
+
+            return map;
+        }
+
         @Override
         public String toString() { return storage.toString(); }
 
@@ -65,11 +91,9 @@ public final class RedBlackBST<T extends Comparable<T>> {
         public void insert(K key, V value) {
             keyClass = key.getClass();
             valueClass = value.getClass();
-            Item<K, V> oldValue = find(key);
-            if (oldValue == null) storage.insert(new Item<K, V>(key, value));
-            else {
-                oldValue.setValue(value);
-            }
+            // Either the new item goes into the tree or we get the item that already has the key,
+            // in both cases the tree is walked once
+            storage.insertIfAbsent(new Item<K, V>(key, value)).setValue(value);
         }
 
         public V delete(K key) {
@@ -77,17 +101,51 @@ public final class RedBlackBST<T extends Comparable<T>> {
             return itemToDelete != null ? storage.delete(itemToDelete).value : null;
         }
 
+        // Calls the action for every item in ascending order of the keys
+        public void forEach(BiConsumer<? super K, ? super V> action) {
+            storage.forEach(item -> action.accept(item.key, item.value));
+        }
+
+        // Items are compared by their keys only, so an item without a value can be used to search for a key
+        private Item<K, V> probe(K key) { return new Item<>(key, null); }
+
+        private K keyOf(Item<K, V> item) { return item != null ? item.key : null; }
+
+        public int rank(K key) { return storage.rank(probe(key)); }
+        public K select(int k) { return keyOf(storage.select(k)); }
+        public int countInRange(K low, K high) { return storage.countInRange(probe(low), probe(high)); }
+        public K floor(K key) { return keyOf(storage.floor(probe(key))); }
+        public K ceiling(K key) { return keyOf(storage.ceiling(probe(key))); }
+
+        /**
+         * Walks the items with keys from one to another inclusive in ascending order, a null bound means there is no bound
+         */
+        public final class Cursor implements SortedTreeMap.Cursor<K, V> {
+            private final RedBlackBST<Item<K, V>>.Cursor cursor;
+
+            private Cursor(K from, K to) {
+                cursor = storage.getCursor(from != null ? probe(from) : null, to != null ? probe(to) : null);
+            }
+
+            public void reset() { cursor.reset(); }
+            public boolean advance() { return cursor.advance(); }
+            public K key() { return cursor.element().key; }
+            public V value() { return cursor.element().value; }
+        }
+
+        public Cursor getCursor(K from, K to) { return new Cursor(from, to); }
+
         public K[] keySet() {
             K[] keys = (K[]) Array.newInstance(keyClass, size());
             int i = 0;
-            for (Item<K, V> item: storage.toArray()) keys[i++] = item.key;
+            for (Item<K, V> item: storage) keys[i++] = item.key;
             return keys;
         }
 
         public V[] values() {
             V[] values = (V[]) Array.newInstance(valueClass, size());
             int i = 0;
-            for (Item<K, V> item: storage.toArray()) values[i++] = item.value;
+            for (Item<K, V> item: storage) values[i++] = item.value;
             return values;
         }
     }
@@ -101,11 +159,39 @@ public final class RedBlackBST<T extends Comparable<T>> {
     public boolean isEmpty() { return root == null; }
     public int size() { return count; }
     public boolean contains(T element) { return get(element) != null; }
-    public int depth() { return depth(root); }
 
-    private int depth(Node<T> node) {
-        if (node == null) return 0;
-        return 1 + Math.max(depth(node.leftChild()), depth(node.rightChild()));
+    /**
+     * Walks the whole tree by the parent references, keeping track of the level we are at.
+     * Where we go next depends on where we came from: from above we go down to the left, from the left child
+     * we go down to the right, from the right child we go back up
+     */
+    public int depth() {
+        int depth = 0;
+        int level = 1;
+        Node<T> previous = null;
+        Node<T> node = root;
+
+        while (node != null) {
+            Node<T> next;
+
+            if (previous == node.parent()) {
+                if (level > depth) depth = level;
+
+                if (node.hasLeftChild()) next = node.leftChild();
+                else if (node.hasRightChild()) next = node.rightChild();
+                else next = node.parent();
+            } else if (previous == node.leftChild() && node.hasRightChild()) {
+                next = node.rightChild();
+            } else {
+                next = node.parent();
+            }
+
+            level += next == node.parent() ? -1 : 1;
+            previous = node;
+            node = next;
+        }
+
+        return depth;
     }
 
     @Override
@@ -114,7 +200,7 @@ public final class RedBlackBST<T extends Comparable<T>> {
 
         StringBuilder builder = new StringBuilder("[");
 
-        inOrder(root, builder);
+        for (Node<T> node = root.leftmost(); node != null; node = node.next()) builder.append(node).append(", ");
 
         int start   = builder.length() - 2;
         int end     = builder.length();
@@ -123,12 +209,56 @@ public final class RedBlackBST<T extends Comparable<T>> {
         return builder.toString();
     }
 
-    private void inOrder(Node<T> node, StringBuilder sb) {
-        if (node != null) {
-            inOrder(node.leftChild(), sb);
-            sb.append(node).append(", ");
-            inOrder(node.rightChild(), sb);
-        }
+    /********************   BULK LOADING   ************************/
+    /**************************************************************/
+
+    /**
+     * Builds a tree from elements that are already in ascending order in O(n), with no comparisons other than
+     * the order check and no rebalancing. The middle element becomes the root, the middle elements of the halves
+     * become its children and so on, so the tree is as shallow as possible: every level is full except maybe
+     * the last one. The nodes on that last level are red and all others are black, so every path from the root
+     * down has the same number of black nodes and no red node has a red child.
+     * @throws IllegalArgumentException if the elements are not in ascending order
+     */
+    public static <T extends Comparable<T>> RedBlackBST<T> fromSorted(T[] sorted) {
+        return fromSorted(Arrays.asList(sorted).iterator(), sorted.length);
+    }
+
+    /**
+     * Same as fromSorted(T[]), but reads the elements lazily, so they don't have to be in memory all at once
+     * @param size the number of elements to take from the iterator
+     */
+    public static <T extends Comparable<T>> RedBlackBST<T> fromSorted(Iterator<? extends T> sorted, int size) {
+        RedBlackBST<T> tree = new RedBlackBST<>();
+        if (size <= 0) return tree;
+
+        // With n nodes the levels 0 to log2(n + 1) - 1 are full, the level after them is the last one if it exists
+        int redLevel = 31 - Integer.numberOfLeadingZeros(size + 1);
+
+        tree.root = build(new SortedInput<>(sorted), 0, size - 1, 0, redLevel);
+        tree.count = size;
+        tree.clazz = tree.root.data().getClass();
+        return tree;
+    }
+
+    // The elements are read in order, so the left subtree is built before its parent and the right one after it
+    private static <T extends Comparable<T>> Node<T> build(SortedInput<T> input, int low, int high, int level, int redLevel) {
+        if (low > high) return null;
+
+        int middle = (low + high) >>> 1;
+        Node<T> left = build(input, low, middle - 1, level + 1, redLevel);
+        Node<T> node = new Node<>(input.next());
+
+        node.setColor(level == redLevel);
+        node.setSize(high - low + 1);
+        node.setLeftChild(left);
+        if (left != null) left.setParent(node);
+
+        Node<T> right = build(input, middle + 1, high, level + 1, redLevel);
+        node.setRightChild(right);
+        if (right != null) right.setParent(node);
+
+        return node;
     }
 
     /********************   INSERTION   ***************************/
@@ -171,6 +301,10 @@ public final class RedBlackBST<T extends Comparable<T>> {
 
         left.setRightChild(nodeToRotate);
         nodeToRotate.setParent(left);
+
+        // The left child now roots the whole subtree, the rotated node lost the left child's left subtree
+        left.setSize(nodeToRotate.size());
+        nodeToRotate.updateSize();
     }
 
     private void rotateLeft(Node<T> nodeToRotate) {
@@ -200,6 +334,10 @@ public final class RedBlackBST<T extends Comparable<T>> {
 
         right.setLeftChild(nodeToRotate);
         nodeToRotate.setParent(right);
+
+        // The right child now roots the whole subtree, the rotated node lost the right child's right subtree
+        right.setSize(nodeToRotate.size());
+        nodeToRotate.updateSize();
     }
 
     private void fixUp(Node<T> node) {
@@ -263,40 +401,59 @@ public final class RedBlackBST<T extends Comparable<T>> {
         }
     }
 
-    public void insert(T element) {
-        clazz = element.getClass();
-        ++count;
-        Node<T> newNode = new Node<>(element);
+    public void insert(T element) { insert(element, true); }
+
+    /**
+     * Inserts the element unless an equal one (compareTo() returns 0) is already in the tree.
+     * Unlike calling contains() and then insert(), this walks down the tree only once.
+     * @return the element that is in the tree afterwards: the one that was already there or the specified one
+     */
+    public T insertIfAbsent(T element) {
+        Node<T> existing = insert(element, false);
+        return existing != null ? existing.data() : element;
+    }
 
+    /**
+     * @param allowDuplicates if true, an element equal to one in the tree goes to the right of it,
+     *                        otherwise it is not inserted
+     * @return the node with an equal element if the element wasn't inserted, otherwise null
+     */
+    private Node<T> insert(T element, boolean allowDuplicates) {
         if (isEmpty()) {
-            root = newNode;
+            clazz = element.getClass();
+            ++count;
+            root = new Node<>(element);
             root.blacken();
-        } else {
-
-            Node<T> current = root;
+            return null;
+        }
 
-            while (true) {
-                if (element.compareTo(current.data()) < 0) {
-                    if (current.hasLeftChild())
-                        current = current.leftChild();
-                    else {
-                        current.setLeftChild(newNode);
-                        break;
-                    }
-                } else {
-                    if (current.hasRightChild())
-                        current = current.rightChild();
-                    else {
-                        current.setRightChild(newNode);
-                        break;
-                    }
-                }
-            }
+        Node<T> current = root;
+        boolean goesLeft;
 
-            newNode.setParent(current);
+        while (true) {
+            int comparison = element.compareTo(current.data());
+            if (comparison == 0 && !allowDuplicates) return current;
 
-            fixUp(newNode);
+            goesLeft = comparison < 0;
+            Node<T> child = goesLeft ? current.leftChild() : current.rightChild();
+            if (child == null) break;
+            current = child;
         }
+
+        // The node is only allocated once we know the element goes in, an insertIfAbsent() of a present element allocates nothing
+        Node<T> newNode = new Node<>(element);
+        if (goesLeft) current.setLeftChild(newNode);
+        else current.setRightChild(newNode);
+
+        clazz = element.getClass();
+        ++count;
+        newNode.setParent(current);
+
+        // Only now we know the node has been added, so the subtrees above it grow by one on the way back up
+        for (Node<T> node = current; node != null; node = node.parent()) node.setSize(node.size() + 1);
+
+        fixUp(newNode);
+        return null;
     }
 
 
@@ -344,85 +501,185 @@ public final class RedBlackBST<T extends Comparable<T>> {
     }
 
 
-    /**********************     DELETION    **************************/
+    /*********************  ORDER STATISTICS  **********************/
     /*****************************************************************/
+    // Every node knows the size of its subtree, so all of these take O(log n)
 
-    private void swap(Node<T> a, Node<T> b) {
-        T temp = a.data();
-        a.setData(b.data());
-        b.setData(temp);
-    }
-    
-    private T deleteAndFix(Node<T> nodeToDelete) {
-        // Deletion in a red black tree is trickier
-        // Here we need to check the colors of the node being deleted, and its sibling
-        // and take appropriate actions to restore the tree's balance. Usually the node being deleted marked as double black
-        // but I'm not going to do so. I am going to use a reference instead. Let's call it "doubleBlackNode".
-        // There are 6 cases we should consider when deleting a node from a red black tree.
-        Node<T> doubleBlackNode = nodeToDelete; // I don't have an additional field in my Node class, so I use this reference
-        Node<T> sibling = nodeToDelete.sibling();
-        Node<T> outsideNephew, insideNephew;
-
-        if (nodeToDelete.isRed()) {
-            // CASE 1. If the node being deleted is red. Just delete it since no rules will be violated
-            if (nodeToDelete.isLeftChild()) nodeToDelete.parent().setLeftChild(null);
-            else nodeToDelete.parent().setRightChild(null);
-            return nodeToDelete.data();
+    private static int sizeOf(Node<?> node) { return node != null ? node.size() : 0; }
+
+    /**
+     * @return the number of elements less than the specified one, it doesn't have to be in the tree
+     */
+    public int rank(T element) { return countLess(element, false); }
+
+    // The number of elements less than the specified one, or less than or equal to it if inclusive is true
+    private int countLess(T element, boolean inclusive) {
+        int less = 0;
+        Node<T> current = root;
+
+        while (current != null) {
+            int comparison = element.compareTo(current.data());
+
+            if (comparison < 0 || (comparison == 0 && !inclusive)) current = current.leftChild();
+            else {
+                // The node and its whole left subtree are less
+                less += sizeOf(current.leftChild()) + 1;
+                current = current.rightChild();
+            }
         }
 
-        if (nodeToDelete.parent().isRed() && sibling == null) {
-            // CASE 2. If the node being deleted is black, its parent is red, and it does not have a sibling
-            // Just delete it and color its parent black
-            nodeToDelete.parent().blacken();
-            if (nodeToDelete.isLeftChild()) nodeToDelete.parent().setLeftChild(null);
-            else nodeToDelete.parent().setRightChild(null);
-            return nodeToDelete.data();
+        return less;
+    }
+
+    /**
+     * @return the k-th smallest element counting from 0 or null if there is no such element
+     */
+    public T select(int k) {
+        if (k < 0 || k >= count) return null;
+
+        Node<T> current = root;
+
+        while (true) {
+            int leftSize = sizeOf(current.leftChild());
+
+            if (k < leftSize) current = current.leftChild();
+            else if (k == leftSize) return current.data();
+            else {
+                k -= leftSize + 1;
+                current = current.rightChild();
+            }
         }
+    }
 
-        while (!doubleBlackNode.isRed() && doubleBlackNode != root) {
-            sibling = doubleBlackNode.sibling();
-            if (sibling.isRed()) {
-                // CASE 3. The sibling of the node being deleted is red. Rotate around the parent. Switch the parent's
-                // color to red, and the sibling's color to black
-                doubleBlackNode.parent().flipColor();
-                sibling.flipColor();
-                if (doubleBlackNode.isLeftChild()) rotateLeft(doubleBlackNode.parent());
-                else rotateRight(doubleBlackNode.parent());
-            } else if ((outsideNephew = doubleBlackNode.outsideNephew()) != null && outsideNephew.isRed()) {
-                // CASE 4. If the outside nephew of the node being deleted is red, rotate around the parent
-                // color the nephew black, the sibling gets its parent's color, and the parent becomes black
-                sibling.setColor(doubleBlackNode.parent().isRed());
-                doubleBlackNode.outsideNephew().blacken();
-                if (doubleBlackNode.isLeftChild()) rotateLeft(doubleBlackNode.parent());
-                else rotateRight(doubleBlackNode.parent());
-                doubleBlackNode = doubleBlackNode.parent();
-
-            } else if ((insideNephew = doubleBlackNode.insideNephew()) != null && insideNephew.isRed()) {
-                // CASE 5. The inside nephew is red. Rotate around the sibling, color it red, color the nephew black
-                // so that we will enter the case 4
-                insideNephew.blacken();
-                sibling.setColor(true);
-                if (doubleBlackNode.isLeftChild()) rotateRight(sibling);
-                else rotateLeft(sibling);
-            } else {
-                // CASE 6. The node being deleted has a black sibling and black nephews.
-                // Make the sibling red, move the reference to the double black node up to consider the cases above
-                sibling.setColor(true);
-                doubleBlackNode = doubleBlackNode.parent();
+    /**
+     * @return the number of elements from low to high inclusive
+     */
+    public int countInRange(T low, T high) {
+        if (low.compareTo(high) > 0) return 0;
+        return countLess(high, true) - countLess(low, false);
+    }
+
+    // The node with the largest element less than or equal to the specified one
+    private Node<T> floorNode(T element) {
+        Node<T> floor = null;
+        Node<T> current = root;
+
+        while (current != null) {
+            if (element.compareTo(current.data()) < 0) current = current.leftChild();
+            else {
+                floor = current;
+                current = current.rightChild();
             }
         }
 
-        // If in the case 6 or 4 the parent is red, we will stop executing the while loop
-        // and below we blacken it
-        if (doubleBlackNode != nodeToDelete) doubleBlackNode.blacken();
+        return floor;
+    }
+
+    // The node with the smallest element greater than or equal to the specified one
+    private Node<T> ceilingNode(T element) {
+        Node<T> ceiling = null;
+        Node<T> current = root;
+
+        while (current != null) {
+            if (element.compareTo(current.data()) > 0) current = current.rightChild();
+            else {
+                ceiling = current;
+                current = current.leftChild();
+            }
+        }
+
+        return ceiling;
+    }
+
+    /**
+     * @return the largest element less than or equal to the specified one or null if there is no such element
+     */
+    public T floor(T element) {
+        Node<T> node = floorNode(element);
+        return node != null ? node.data() : null;
+    }
+
+    /**
+     * @return the smallest element greater than or equal to the specified one or null if there is no such element
+     */
+    public T ceiling(T element) {
+        Node<T> node = ceilingNode(element);
+        return node != null ? node.data() : null;
+    }
+
+
+    /**********************     DELETION    **************************/
+    /*****************************************************************/
+
+    private static boolean isRed(Node<?> node) { return node != null && node.isRed(); }
+
+    /**
+     * Puts the child in place of its parent, the parent is taken out of the tree
+     */
+    private void replace(Node<T> node, Node<T> child) {
+        if (node == root) root = child;
+        else if (node.isLeftChild()) node.parent().setLeftChild(child);
+        else node.parent().setRightChild(child);
+
+        child.setParent(node.parent());
+    }
+
+    // Every subtree on the way from the node up to the root has lost one node
+    private void decrementSizes(Node<T> node) {
+        for (; node != null; node = node.parent()) node.setSize(node.size() - 1);
+    }
+
+    /**
+     * Restores the balance before a black leaf is removed. Taking it out would leave its path one black node short,
+     * so we treat it as "double black" and push the extra black up the tree until it can be absorbed by a red node,
+     * by a rotation, or by the root. The leaf stays in the tree while we do this, so it always has a sibling.
+     */
+    private void fixDoubleBlack(Node<T> node) {
+        while (node != root && !node.isRed()) {
+            Node<T> parent = node.parent();
+            boolean isLeft = node.isLeftChild();
+            Node<T> sibling = isLeft ? parent.rightChild() : parent.leftChild();
+
+            if (sibling.isRed()) {
+                // CASE 1. The sibling is red. Rotate it above the parent, so the node gets a black sibling
+                sibling.blacken();
+                parent.setColor(true);
+                if (isLeft) rotateLeft(parent);
+                else rotateRight(parent);
+                sibling = isLeft ? parent.rightChild() : parent.leftChild();
+            }
+
+            Node<T> outsideNephew = isLeft ? sibling.rightChild() : sibling.leftChild();
+            Node<T> insideNephew = isLeft ? sibling.leftChild() : sibling.rightChild();
 
+            if (!isRed(outsideNephew) && !isRed(insideNephew)) {
+                // CASE 2. Both nephews are black. Make the sibling red, so both sides of the parent are one black short,
+                // and move the problem up to the parent
+                sibling.setColor(true);
+                node = parent;
+            } else {
+                if (!isRed(outsideNephew)) {
+                    // CASE 3. Only the inside nephew is red. Rotate it above the sibling to get into the case 4
+                    insideNephew.blacken();
+                    sibling.setColor(true);
+                    if (isLeft) rotateRight(sibling);
+                    else rotateLeft(sibling);
+                    sibling = isLeft ? parent.rightChild() : parent.leftChild();
+                    outsideNephew = isLeft ? sibling.rightChild() : sibling.leftChild();
+                }
 
-        // What we have done so far was keeping balance of the tree, now
-        // we will perform the actual deletion
-        if (nodeToDelete.isLeftChild()) nodeToDelete.parent().setLeftChild(null);
-        else nodeToDelete.parent().setRightChild(null);
+                // CASE 4. The outside nephew is red. Rotate the sibling above the parent, it takes the parent's color,
+                // and the parent and the nephew become black. This adds a black node to the node's path, we are done
+                sibling.setColor(parent.isRed());
+                parent.blacken();
+                outsideNephew.blacken();
+                if (isLeft) rotateLeft(parent);
+                else rotateRight(parent);
+                node = root;
+            }
+        }
 
-        return nodeToDelete.data();
+        node.blacken();
     }
 
     public T delete(T element) {
@@ -431,78 +688,139 @@ public final class RedBlackBST<T extends Comparable<T>> {
         if (isEmpty() || (nodeToDelete = find(element)) == null) return null;
 
         --count;
+        T data = nodeToDelete.data();
+
+        // If the node has two children, it takes the data of its inorder successor (the node with the least value
+        // in its right subtree) and we delete the successor instead. The successor has no left child
+        if (nodeToDelete.hasLeftChild() && nodeToDelete.hasRightChild()) {
+            Node<T> successor = nodeToDelete.successor();
+            nodeToDelete.setData(successor.data());
+            nodeToDelete = successor;
+        }
 
-        // If this node is in the tree, we will delete it and return its data
-        while (true) {
-            // Now we need to know whether the node is a leaf, has one child or has two children
-            if (nodeToDelete.isLeafNode()) {
-                // CASE 1
-                T temp = nodeToDelete.data();
-                // If it is a leaf, we need to know whether it is the root
-                // If so, it means this node is the only one in the tree, so just remove it
-                if (nodeToDelete == root) root = null;
-                // But if it isn't the root it means we are about to delete the node from the bottom of the tree
-                // and delegate this task to deleteAndFix() method
-                else temp = deleteAndFix(nodeToDelete);
-
-                return temp;
-
-            } else if (!nodeToDelete.hasRightChild()) {
-                // CASE 2
-                // If the node being deleted has a left child only
-                // and it is the root
-                if (nodeToDelete == root) {
-                    // Break the reference from that child to the parent, that is the node being deleted
-                    // And make its left child the root
-                    nodeToDelete.leftChild().setParent(null);
-                    root = nodeToDelete.leftChild();
-                    return nodeToDelete.data();
-                } else {
-                    // But if it is the root, swap the values of the node being deleted and its left child, and then remove that
-                    // left child. Thus we will always end up deleting a leaf node
-                    swap(nodeToDelete, nodeToDelete.leftChild());
-                    nodeToDelete = nodeToDelete.leftChild();
-                }
+        Node<T> child = nodeToDelete.hasLeftChild() ? nodeToDelete.leftChild() : nodeToDelete.rightChild();
 
-            } else if (!nodeToDelete.hasLeftChild()) {
-                // CASE 3
-                // Everything is the same as above except for now the node being deleted has a right child only
-                if (nodeToDelete == root) {
-                    nodeToDelete.rightChild().setParent(null);
-                    root = nodeToDelete.rightChild();
-                    return nodeToDelete.data();
-                } else {
-                    swap(nodeToDelete, nodeToDelete.rightChild());
-                    nodeToDelete = nodeToDelete.rightChild();
-                }
-            } else {
-                // CASE 4
-                // This is the case when the node being deleted has two children.
-                // And to delete it we have to find the node with the least value in the right tree of the node being deleted
-                // which we call its inorder successor
-                Node<T> successor = nodeToDelete.successor();
-                // Swap their values
-                swap(nodeToDelete, successor);
-                // Delete the successor and the control flow will eventually enter the case 1
-                nodeToDelete = successor;
+        if (child != null) {
+            // A node with one child must be black and its child must be a red leaf,
+            // so the child takes its place and becomes black, no path loses a black node
+            decrementSizes(nodeToDelete.parent());
+            replace(nodeToDelete, child);
+            child.blacken();
+        } else if (nodeToDelete == root) {
+            root = null;
+        } else {
+            // A red leaf can just be removed, a black one has to be balanced first
+            if (!nodeToDelete.isRed()) fixDoubleBlack(nodeToDelete);
+
+            decrementSizes(nodeToDelete.parent());
+            if (nodeToDelete.isLeftChild()) nodeToDelete.parent().setLeftChild(null);
+            else nodeToDelete.parent().setRightChild(null);
+        }
+
+        return data;
+    }
+
+    /**
+     * Calls the action for every element in ascending order without copying them into an array.
+     * The action must not modify the tree.
+     */
+    public void forEach(Consumer<? super T> action) {
+        if (root != null) for (Node<T> node = root.leftmost(); node != null; node = node.next()) action.accept(node.data());
+    }
+
+    /**
+     * A lazy iterator over the elements in ascending order, so the tree can be used in a for-each loop.
+     * Like the cursor it only keeps the next node and follows the parent references, so it needs O(1) extra space
+     * however deep the tree is. The tree must not be modified while it's in use.
+     */
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private Node<T> next = root != null ? root.leftmost() : null;
+
+            public boolean hasNext() { return next != null; }
+
+            public T next() {
+                if (next == null) throw new NoSuchElementException();
+
+                T data = next.data();
+                next = next.next();
+                return data;
             }
+        };
+    }
+
+    /**
+     * A cursor walks the tree in ascending order one element at a time, so two trees can be walked side by side
+     * (for example, to merge them). It follows the parent references to get to the next node,
+     * so it needs neither a stack nor an array. The tree must not be modified while the cursor is in use.
+     * A cursor over a range finds its first element in O(log n) and then visits only the elements in the range.
+     *
+     * Usage:
+     * RedBlackBST<T>.Cursor cursor = tree.getCursor();
+     * while (cursor.advance()) process(cursor.element());
+     */
+    public final class Cursor implements SortedTree.Cursor<T> {
+        private final T from; // The bounds of the range, inclusive. Null means the range is not bounded on that side
+        private final T to;
+        private Node<T> current;
+        private Node<T> next;
+
+        private Cursor(T from, T to) {
+            this.from = from;
+            this.to = to;
+            reset();
+        }
+
+        /**
+         * Puts the cursor before the smallest element of the range
+         */
+        public void reset() {
+            current = null;
+
+            if (from != null) next = ceilingNode(from);
+            else next = root != null ? root.leftmost() : null;
+        }
+
+        /**
+         * Moves the cursor to the next element
+         * @return false if there are no more elements in the range
+         */
+        public boolean advance() {
+            current = next;
+
+            if (current != null && to != null && current.data().compareTo(to) > 0) current = null;
+            if (current == null) {
+                next = null;
+                return false;
+            }
+
+            next = current.next();
+            return true;
+        }
+
+        public T element() {
+            if (current == null) throw new IllegalStateException("The cursor is not at an element");
+            return current.data();
         }
     }
 
+    public Cursor getCursor() { return new Cursor(null, null); }
+
+    /**
+     * @return a cursor over the elements from one to another inclusive, a null bound means there is no bound
+     */
+    public Cursor getCursor(T from, T to) { return new Cursor(from, to); }
+
+    public RedBlackBST<T> empty() { return new RedBlackBST<>(); }
+
+    public RedBlackBST<T> withSorted(T[] sorted, int count) { return fromSorted(Arrays.asList(sorted).iterator(), count); }
+
     public T[] toArray() {
         T[] array = (T[]) Array.newInstance(clazz, count);
 
-        inOrder(root, array, 0);
+        int i = 0;
+        for (T element: this) array[i++] = element;
 
         return array;
     }
-
-    private int inOrder(Node<T> node, T[] array, int i) {
-        if (node != null) {
-            i = inOrder(node.leftChild(), array, i);
-            array[i++] = node.data();
-            i = inOrder(node.rightChild(), array, i);
-        }
-        return i;
-    }
 }
@@ -0,0 +1,29 @@
+package datastr.tree;
+
+import java.util.Iterator;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * Reads the elements for a bulk load one by one and makes sure they really are in ascending order,
+ * a tree built from unsorted elements would silently give wrong answers
+ */
+
+final class SortedInput<T extends Comparable<T>> {
+    private final Iterator<? extends T> iterator;
+    private T previous;
+
+    SortedInput(Iterator<? extends T> iterator) { this.iterator = iterator; }
+
+    T next() {
+        if (!iterator.hasNext()) throw new IllegalArgumentException("There are fewer elements than the specified size");
+
+        T element = iterator.next();
+        if (previous != null && previous.compareTo(element) > 0) throw new IllegalArgumentException("The elements are not in ascending order");
+
+        previous = element;
+        return element;
+    }
+}
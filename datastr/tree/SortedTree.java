@@ -0,0 +1,56 @@
+package datastr.tree;
+
+import java.util.function.Consumer;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * What SortedSet needs from its storage: a collection of distinct elements kept in ascending order.
+ * RedBlackBST, ArrayRedBlackBST and BPlusTree.SetDecorator can all be used.
+ */
+
+public interface SortedTree<T extends Comparable<T>> {
+    /** State Information **/
+    public boolean isEmpty();
+    public int size();
+    public boolean contains(T element);
+
+    /** Main Operations **/
+    public void insert(T element); // Only for elements known to be missing, a binary tree would keep a duplicate
+    public T insertIfAbsent(T element); // The element that is in the tree afterwards
+    public T get(T element);
+    public T delete(T element);
+
+    /** Order Statistics **/
+    public int rank(T element); // The number of elements less than the specified one
+    public T select(int k); // The k-th smallest element counting from 0
+    public int countInRange(T low, T high); // Both bounds are inclusive
+    public T floor(T element);
+    public T ceiling(T element);
+
+    /** Traversal **/
+    public void forEach(Consumer<? super T> action); // In ascending order
+    public Cursor<T> getCursor();
+    public Cursor<T> getCursor(T from, T to); // Both bounds are inclusive, a null bound means there is no bound
+    public T[] toArray();
+
+    public SortedTree<T> empty(); // An empty tree of the same kind and configuration
+
+    /**
+     * @return a tree of the same kind and configuration holding the first count elements of the array, which must be
+     * distinct and in ascending order. It's built in O(n) without a single rebalancing
+     * @throws IllegalArgumentException if the elements are not in ascending order
+     */
+    public SortedTree<T> withSorted(T[] sorted, int count);
+
+    /**
+     * Walks the elements in ascending order one at a time. The tree must not be modified while it's in use.
+     */
+    public interface Cursor<T> {
+        public void reset(); // Puts the cursor before the smallest element
+        public boolean advance(); // False if there are no more elements
+        public T element();
+    }
+}
@@ -0,0 +1,47 @@
+package datastr.tree;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Created by Renat Kaitmazov on 17/10/26.
+ */
+
+/**
+ * What SortedMap needs from its storage: distinct keys with their values kept in ascending order of the keys.
+ * RedBlackBST.RBTreeDecorator and BPlusTree can both be used.
+ */
+
+public interface SortedTreeMap<K extends Comparable<K>, V> {
+    /** State Information **/
+    public boolean isEmpty();
+    public int size();
+    public boolean contains(K key);
+
+    /** Main Operations **/
+    public void insert(K key, V value); // Replaces the value if the key is already there
+    public V get(K key);
+    public V delete(K key);
+
+    /** Order Statistics **/
+    public int rank(K key); // The number of keys less than the specified one
+    public K select(int k); // The k-th smallest key counting from 0
+    public int countInRange(K low, K high); // Both bounds are inclusive
+    public K floor(K key);
+    public K ceiling(K key);
+
+    /** Traversal **/
+    public void forEach(BiConsumer<? super K, ? super V> action); // In ascending order of the keys
+    public Cursor<K, V> getCursor(K from, K to); // Both bounds are inclusive, a null bound means there is no bound
+    public K[] keySet();
+    public V[] values();
+
+    /**
+     * Walks the entries in ascending order of the keys one at a time. The map must not be modified while it's in use.
+     */
+    public interface Cursor<K, V> {
+        public void reset(); // Puts the cursor before the smallest key
+        public boolean advance(); // False if there are no more entries
+        public K key();
+        public V value();
+    }
+}